@@ -0,0 +1,374 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// computer player that searches the game tree with negamax alpha-beta search
+// the search deepens one move at a time until its time budget runs out, orders moves so the best ones are searched first,
+// and stores searched positions in a transposition table so they aren't searched again
+// with more than one thread, every thread searches the same position and shares the transposition table (lazy SMP),
+// so the threads fill in each other's results and the main thread's search finishes sooner
+public class AlphaBetaEngine implements Engine {
+    // score of a finished game per tile ahead, which is larger than any evaluation so a won game is always preferred
+    static final int DISC_SCORE = 1000;
+    static final int INFINITY = 1000000;
+    private static final int MAX_PLY = 64;
+    // moves searched shallower than this are ordered by square only, as counting the opponent's replies costs more than it saves
+    private static final int MOBILITY_ORDERING_DEPTH = 3;
+    // most empty squares the endgame solver plays perfectly with instead of searching, where solving takes a few milliseconds
+    private static final int SOLVER_EMPTIES = 14;
+    private static final int SOLVER_TABLE_MEGABYTES = 16;
+
+    // squares grouped by how good they are to hold, from the corners down to the squares next to the corners
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long NEXT_TO_CORNERS = 0x4281000000008142L;
+    private static final long DIAGONAL_TO_CORNERS = 0x0042000000004200L;
+    private static final long EDGES = 0x3c0081818181003cL;
+    private static final int CORNER_WEIGHT = 100;
+    private static final int NEXT_TO_CORNER_WEIGHT = -20;
+    private static final int DIAGONAL_TO_CORNER_WEIGHT = -50;
+    private static final int EDGE_WEIGHT = 8;
+    private static final int MOBILITY_WEIGHT = 10;
+
+    // square part of the score for each square, used to order moves
+    private static final int[] SQUARE_SCORES = new int[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARE_SCORES[square] = squareScore(1L << square, 0);
+        }
+    }
+
+    private final TranspositionTable table;
+    private final long timeBudget;
+    private final int maxDepth;
+    // one searcher per thread, where the first runs on the thread calling selectMove and the rest on the helper threads
+    private final Searcher[] searchers;
+    private final ExecutorService helpers;
+    private final Future<?>[] running;
+    // book of moves to play instead of searching in the opening, or null if there isn't one
+    private OpeningBook book = null;
+    // pattern evaluation to score positions with instead of the square weights and mobility, or null if there isn't one
+    private PatternEval patterns = null;
+    // solver for the end of the game, created the first time it is needed
+    private EndgameSolver solver = null;
+    private volatile boolean stopped;
+    private long deadline;
+    private int lastDepth;
+    private int lastScore;
+
+    // creating a single threaded engine with the time budget per move in milliseconds, the deepest search allowed and the transposition table size in megabytes
+    public AlphaBetaEngine(long timeBudgetMillis, int maxDepth, int tableMegabytes) {
+        this(timeBudgetMillis, maxDepth, tableMegabytes, 1);
+    }
+
+    // creating an engine that searches with the given number of threads
+    public AlphaBetaEngine(long timeBudgetMillis, int maxDepth, int tableMegabytes, int threads) {
+        this.timeBudget = timeBudgetMillis * 1000000L;
+        this.maxDepth = Math.min(maxDepth, MAX_PLY - 4);
+        this.table = new TranspositionTable(tableMegabytes);
+        searchers = new Searcher[threads];
+        for (int i = 0; i < threads; i++) {
+            searchers[i] = new Searcher();
+        }
+        running = new Future<?>[threads];
+        // helper threads are daemons, so an engine that is no longer used doesn't keep the process running
+        helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, task -> {
+            Thread thread = new Thread(task, "search helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // using the opening book's move for any position in the book, instead of searching
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    // scoring positions with the pattern evaluation's weights, which are kept up to date move by move during the search
+    public void setPatternEval(PatternEval patterns) {
+        this.patterns = patterns;
+    }
+
+    public int selectMove(Board board, char colour) {
+        if (book != null) {
+            int move = book.lookup(board, colour);
+            if (move >= 0) {
+                lastDepth = 0;
+                lastScore = book.score(board, colour);
+                return move;
+            }
+        }
+        int empties = Long.bitCount(board.getEmpty());
+        if (empties <= SOLVER_EMPTIES) {
+            if (solver == null) {
+                solver = new EndgameSolver(SOLVER_TABLE_MEGABYTES);
+            }
+            lastDepth = empties;
+            lastScore = solver.solve(board, colour) * DISC_SCORE;
+            return solver.getBestMove();
+        }
+        return search(board, colour, maxDepth, System.nanoTime() + timeBudget);
+    }
+
+    // choosing a move by searching to exactly the given depth, however long it takes
+    public int searchToDepth(Board board, char colour, int depth) {
+        return search(board, colour, Math.min(depth, MAX_PLY - 4), Long.MAX_VALUE);
+    }
+
+    // getting the depth of the last search that finished
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    // getting the score of the last search that finished, from the point of view of the player who moved
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    // getting the number of positions visited by all threads while choosing the last move
+    public long getNodes() {
+        long nodes = 0;
+        for (Searcher searcher : searchers) {
+            nodes += searcher.nodes;
+        }
+        return nodes;
+    }
+
+    // searching with every thread until the main search reaches the depth limit or the deadline passes
+    private int search(Board board, char colour, int depthLimit, long deadline) {
+        long player = board.getTiles(colour);
+        long opponent = board.getTiles(Board.opponent(colour));
+        long hash = Zobrist.hash(board.getTiles('D'), board.getTiles('L'), colour);
+        this.deadline = deadline;
+        stopped = false;
+        for (Searcher searcher : searchers) {
+            searcher.nodes = 0;
+        }
+        // half of the helpers search one move deeper, so the threads spread over two depths instead of all repeating the same search
+        for (int i = 1; i < searchers.length; i++) {
+            Searcher helper = searchers[i];
+            int depthOffset = i % 2;
+            running[i] = helpers.submit(() -> helper.iterate(player, opponent, colour, hash, depthLimit, depthOffset, false));
+        }
+        int bestMove = searchers[0].iterate(player, opponent, colour, hash, depthLimit, 0, true);
+        // stopping the helpers and waiting for them, so they don't keep using the table during the next search
+        stopped = true;
+        for (int i = 1; i < searchers.length; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("search helper failed", e);
+            }
+        }
+        return bestMove;
+    }
+
+    // state of one searching thread, with its own move lists so threads never share anything but the transposition table
+    private class Searcher {
+        // move lists for each ply, allocated once so the search doesn't create any objects
+        private final int[][] moveLists = new int[MAX_PLY][32];
+        private final long[][] flipLists = new long[MAX_PLY][32];
+        private final int[][] moveOrder = new int[MAX_PLY][32];
+        // pattern indexes of the position at each ply, when there is a pattern evaluation
+        private final int[][] patternIndexes = new int[MAX_PLY][PatternEval.PLACEMENTS];
+        private int rootMove;
+        private long nodes;
+
+        // searching one move deeper at a time up to the depth limit, returning the best move of the deepest finished search
+        // the main searcher records the depth and score of its deepest finished search
+        int iterate(long player, long opponent, char colour, long hash, int depthLimit, int depthOffset, boolean main) {
+            int empties = Long.bitCount(~(player | opponent));
+            // falling back to any legal move in case not even the first search finishes in time
+            int bestMove = Long.numberOfTrailingZeros(Board.legalMoves(player, opponent));
+            if (patterns != null) {
+                PatternEval.indexes(colour == 'D' ? player : opponent, colour == 'D' ? opponent : player, patternIndexes[0]);
+            }
+            for (int depth = 1 + depthOffset; depth <= depthLimit + depthOffset && !stopped; depth++) {
+                rootMove = -1;
+                int score = negamax(player, opponent, colour, hash, depth, -INFINITY, INFINITY, 0, false);
+                // a search cut short by the time budget still found a better move if it finished searching its first move
+                if (rootMove >= 0) {
+                    bestMove = rootMove;
+                }
+                if (stopped) {
+                    break;
+                }
+                if (main) {
+                    lastDepth = depth;
+                    lastScore = score;
+                }
+                // searching deeper than the number of empty squares can't change the result
+                if (depth >= empties) {
+                    break;
+                }
+            }
+            return bestMove;
+        }
+
+        // searching the position to the given depth, returning its score from the point of view of the player to move
+        private int negamax(long player, long opponent, char colour, long hash, int depth, int alpha, int beta, int ply, boolean passed) {
+            // checking the clock every 1024 positions, as reading it is slow compared to a search step
+            if ((++nodes & 1023) == 0 && System.nanoTime() > deadline) {
+                stopped = true;
+            }
+            if (stopped) {
+                return 0;
+            }
+            long moves = Board.legalMoves(player, opponent);
+            if (moves == 0) {
+                // both players passing ends the game, which is scored by the tile count
+                if (passed) {
+                    return finalScore(player, opponent);
+                }
+                if (patterns != null) {
+                    System.arraycopy(patternIndexes[ply], 0, patternIndexes[ply + 1], 0, PatternEval.PLACEMENTS);
+                }
+                return -negamax(opponent, player, Board.opponent(colour), Zobrist.afterPass(hash), depth, -beta, -alpha, ply + 1, true);
+            }
+            if (depth == 0 || ply >= MAX_PLY - 1) {
+                if (patterns != null) {
+                    return patternScore(player, opponent, colour, ply);
+                }
+                return evaluate(player, opponent, moves);
+            }
+            int originalAlpha = alpha;
+            int tableMove = -1;
+            long entry = table.probe(hash);
+            if (entry != 0) {
+                tableMove = TranspositionTable.move(entry);
+                // using the stored score if it was searched at least as deep, except at the root where the best move is needed
+                if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                    int score = TranspositionTable.score(entry);
+                    int kind = TranspositionTable.kind(entry);
+                    if (kind == TranspositionTable.EXACT) {
+                        return score;
+                    }
+                    else if (kind == TranspositionTable.LOWER_BOUND) {
+                        alpha = Math.max(alpha, score);
+                    }
+                    else {
+                        beta = Math.min(beta, score);
+                    }
+                    if (alpha >= beta) {
+                        return score;
+                    }
+                }
+            }
+            int count = orderMoves(player, opponent, moves, tableMove, depth, ply);
+            int[] moveList = moveLists[ply];
+            long[] flipList = flipLists[ply];
+            int best = -INFINITY;
+            int bestMove = -1;
+            char opponentsColour = Board.opponent(colour);
+            for (int i = 0; i < count; i++) {
+                int square = moveList[i];
+                // flips are only worked out while ordering when they are needed for the opponent's replies, and never 0 for a legal move
+                long flipped = flipList[i];
+                if (flipped == 0) {
+                    flipped = Board.flips(player, opponent, square);
+                }
+                long newPlayer = player | flipped | (1L << square);
+                long newOpponent = opponent & ~flipped;
+                long newHash = Zobrist.afterMove(hash, colour, square, flipped);
+                if (patterns != null) {
+                    System.arraycopy(patternIndexes[ply], 0, patternIndexes[ply + 1], 0, PatternEval.PLACEMENTS);
+                    PatternEval.play(patternIndexes[ply + 1], colour, square, flipped);
+                }
+                int score;
+                // searching the first move with the full window and the rest with a null window, only searching again if a move beats the first
+                if (i == 0) {
+                    score = -negamax(newOpponent, newPlayer, opponentsColour, newHash, depth - 1, -beta, -alpha, ply + 1, false);
+                }
+                else {
+                    score = -negamax(newOpponent, newPlayer, opponentsColour, newHash, depth - 1, -alpha - 1, -alpha, ply + 1, false);
+                    if (score > alpha && score < beta) {
+                        score = -negamax(newOpponent, newPlayer, opponentsColour, newHash, depth - 1, -beta, -alpha, ply + 1, false);
+                    }
+                }
+                if (stopped) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    bestMove = square;
+                    if (ply == 0) {
+                        rootMove = square;
+                    }
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+            int kind = best <= originalAlpha ? TranspositionTable.UPPER_BOUND : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            table.store(hash, depth, kind, best, bestMove);
+            return best;
+        }
+
+        // scoring the position at the ply with the pattern evaluation, which predicts the final tile difference, so its score is in the
+        // same units as a finished game's and is kept within the scores a finished game can have
+        private int patternScore(long player, long opponent, char colour, int ply) {
+            int score = patterns.evaluate(patternIndexes[ply], Long.bitCount(player | opponent), colour) * (DISC_SCORE / 100);
+            return Math.max(-64 * DISC_SCORE, Math.min(64 * DISC_SCORE, score));
+        }
+
+        // filling the move and flip lists for the ply in the order to search them, returning the number of moves
+        // the transposition table's move goes first, then corners, then the moves that leave the opponent the fewest replies
+        private int orderMoves(long player, long opponent, long moves, int tableMove, int depth, int ply) {
+            int[] moveList = moveLists[ply];
+            long[] flipList = flipLists[ply];
+            int[] order = moveOrder[ply];
+            int count = 0;
+            for (; moves != 0; moves &= moves - 1) {
+                int square = Long.numberOfTrailingZeros(moves);
+                long placed = 1L << square;
+                long flipped = 0;
+                int priority;
+                if (square == tableMove) {
+                    priority = Integer.MAX_VALUE;
+                }
+                else {
+                    priority = SQUARE_SCORES[square];
+                    if (depth >= MOBILITY_ORDERING_DEPTH) {
+                        flipped = Board.flips(player, opponent, square);
+                        priority -= 16 * Long.bitCount(Board.legalMoves(opponent & ~flipped, player | flipped | placed));
+                    }
+                }
+                // insertion sort, which is fastest for the few moves in a position
+                int i = count++;
+                while (i > 0 && order[i - 1] < priority) {
+                    order[i] = order[i - 1];
+                    moveList[i] = moveList[i - 1];
+                    flipList[i] = flipList[i - 1];
+                    i--;
+                }
+                order[i] = priority;
+                moveList[i] = square;
+                flipList[i] = flipped;
+            }
+            return count;
+        }
+    }
+
+    // estimating how good the position is for the player to move, from the squares each player holds and the number of moves each has
+    static int evaluate(long player, long opponent, long playerMoves) {
+        int mobility = Long.bitCount(playerMoves) - Long.bitCount(Board.legalMoves(opponent, player));
+        return squareScore(player, opponent) + MOBILITY_WEIGHT * mobility;
+    }
+
+    // scoring the squares held by the player against the squares held by the opponent
+    private static int squareScore(long player, long opponent) {
+        return CORNER_WEIGHT * (Long.bitCount(player & CORNERS) - Long.bitCount(opponent & CORNERS))
+                + NEXT_TO_CORNER_WEIGHT * (Long.bitCount(player & NEXT_TO_CORNERS) - Long.bitCount(opponent & NEXT_TO_CORNERS))
+                + DIAGONAL_TO_CORNER_WEIGHT * (Long.bitCount(player & DIAGONAL_TO_CORNERS) - Long.bitCount(opponent & DIAGONAL_TO_CORNERS))
+                + EDGE_WEIGHT * (Long.bitCount(player & EDGES) - Long.bitCount(opponent & EDGES));
+    }
+
+    // scoring a finished game by how many more tiles the player has than the opponent
+    static int finalScore(long player, long opponent) {
+        return DISC_SCORE * (Long.bitCount(player) - Long.bitCount(opponent));
+    }
+}
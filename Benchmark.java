@@ -0,0 +1,408 @@
+// benchmarks for the Board engine, covering legal move generation, making moves and flipping tiles, and perft (counting the leaf positions to a given depth)
+// every benchmark checks its counts against the published perft numbers for the standard Othello opening, so it doubles as a correctness check
+public class Benchmark {
+    // published perft numbers from the Othello opening, where a pass counts as a move and a finished game counts as a leaf, indexed by depth
+    static final long[] PERFT = {1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L, 24571284L, 212258800L, 1939886636L};
+    // depth of the positions that the move generation and flipping benchmarks run over
+    private static final int SAMPLE_DEPTH = 7;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    // positions collected for the move generation and flipping benchmarks, with the player to move first
+    private static long[] samplePlayers;
+    private static long[] sampleOpponents;
+    private static int sampleCount;
+
+    private static final String USAGE = "Usage: java Benchmark [perft depth]\n"
+            + "       java Benchmark search <depth> <threads>\n"
+            + "       java Benchmark endgame <empties>\n"
+            + "       java Benchmark mcts <milliseconds> <threads>";
+    // number of positions, and how many random moves into the game they are, for the search benchmark
+    private static final int SEARCH_POSITIONS = 8;
+    private static final int SEARCH_POSITION_MOVES = 20;
+    // number of positions for the endgame benchmark, which are reached with a few random moves and then a shallow search for each move
+    private static final int ENDGAME_POSITIONS = 12;
+    private static final int ENDGAME_RANDOM_MOVES = 6;
+    private static final int ENDGAME_PLAY_DEPTH = 5;
+    // number of positions the endgame solver's best moves are checked on, and the range of empties they have
+    private static final int BEST_MOVE_POSITIONS = 1000;
+    private static final int BEST_MOVE_FEWEST_EMPTIES = 6;
+    private static final int BEST_MOVE_MOST_EMPTIES = 12;
+
+    // main method
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("search")) {
+            searchBenchmark(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("mcts")) {
+            mctsBenchmark(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("endgame")) {
+            endgameBenchmark(args);
+            return;
+        }
+        // checking for the optional perft depth command-line argument
+        int perftDepth = 10;
+        if (args.length > 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        if (args.length == 1) {
+            try {
+                perftDepth = Integer.parseInt(args[0]);
+                if (perftDepth < 1 || perftDepth >= PERFT.length) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                System.err.println(USAGE);
+                System.err.println("ERROR: perft depth must be an integer between 1 and " + (PERFT.length - 1));
+                System.exit(1);
+            }
+        }
+        Board board = new Board();
+        long dark = board.getTiles('D');
+        long light = board.getTiles('L');
+        // collecting every position at the sample depth, so each benchmark below works over the same positions
+        samplePlayers = new long[(int) PERFT[SAMPLE_DEPTH]];
+        sampleOpponents = new long[(int) PERFT[SAMPLE_DEPTH]];
+        collect(dark, light, SAMPLE_DEPTH);
+        check("sample positions", sampleCount, PERFT[SAMPLE_DEPTH]);
+
+        // legal move generation, where the moves from every sample position add up to the next perft number
+        long start = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            start = System.nanoTime();
+            long moves = countMoves();
+            long time = System.nanoTime() - start;
+            check("legal move generation", moves, PERFT[SAMPLE_DEPTH + 1]);
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, time);
+            }
+        }
+        report("legal move generation", sampleCount, best, "positions");
+
+        // making every legal move from every sample position, which flips tiles for each move
+        best = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            start = System.nanoTime();
+            long moves = makeMoves();
+            long time = System.nanoTime() - start;
+            check("move application and flipping", moves, PERFT[SAMPLE_DEPTH + 1]);
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, time);
+            }
+        }
+        report("move application and flipping", PERFT[SAMPLE_DEPTH + 1], best, "moves");
+
+        // perft from the opening for every depth up to the requested depth
+        for (int depth = 1; depth <= perftDepth; depth++) {
+            start = System.nanoTime();
+            long nodes = perft(dark, light, depth, false);
+            long time = System.nanoTime() - start;
+            check("perft " + depth, nodes, PERFT[depth]);
+            report("perft " + depth, nodes, time, "nodes");
+        }
+    }
+
+    // timing a fixed depth search of some midgame positions with one thread and then with the given number of threads, reporting the speedup
+    private static void searchBenchmark(String[] args) {
+        int depth = 0;
+        int threads = 0;
+        try {
+            if (args.length != 3) {
+                throw new NumberFormatException();
+            }
+            depth = Integer.parseInt(args[1]);
+            threads = Integer.parseInt(args[2]);
+            if (depth < 1 || threads < 1) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: search depth and threads must be positive integers");
+            System.exit(1);
+        }
+        Board[] positions = new Board[SEARCH_POSITIONS];
+        char[] colours = new char[SEARCH_POSITIONS];
+        searchPositions(positions, colours);
+        // searching every position once before timing anything, so the single threaded search isn't timed while the JIT compiler warms up
+        AlphaBetaEngine warmup = new AlphaBetaEngine(0, depth, 64, threads);
+        for (int i = 0; i < SEARCH_POSITIONS; i++) {
+            warmup.searchToDepth(positions[i], colours[i], depth);
+        }
+        long singleThreadTime = 0;
+        for (int threadCount : new int[] {1, threads}) {
+            long time = 0;
+            long nodes = 0;
+            AlphaBetaEngine engine = new AlphaBetaEngine(0, depth, 64, threadCount);
+            for (int i = 0; i < SEARCH_POSITIONS; i++) {
+                // the table isn't cleared between positions, which is the same as in a game
+                long start = System.nanoTime();
+                engine.searchToDepth(positions[i], colours[i], depth);
+                time += System.nanoTime() - start;
+                nodes += engine.getNodes();
+            }
+            if (threadCount == 1) {
+                singleThreadTime = time;
+            }
+            report("search depth " + depth + ", " + threadCount + " thread(s)", nodes, time, "nodes");
+            System.out.printf("%-32s %12.2fx%n", "speedup", (double) singleThreadTime / time);
+        }
+    }
+
+    // making the search benchmark's positions by playing random moves from a fixed seed, so every run searches the same positions
+    private static void searchPositions(Board[] positions, char[] colours) {
+        RandomEngine random = new RandomEngine(SEARCH_POSITIONS);
+        for (int i = 0; i < positions.length; i++) {
+            Board board = new Board();
+            char colour = 'D';
+            for (int move = 0; move < SEARCH_POSITION_MOVES; move++) {
+                if (board.legalMoves(colour) != 0) {
+                    board.makeMove(colour, random.selectMove(board, colour));
+                }
+                colour = Board.opponent(colour);
+            }
+            positions[i] = board;
+            colours[i] = colour;
+        }
+    }
+
+    // timing Monte Carlo tree search on the search benchmark's positions for the given milliseconds each, with one thread and with the
+    // given number of threads, where playouts per second should grow with the threads as long as there are cores for them
+    private static void mctsBenchmark(String[] args) {
+        int time = 0;
+        int threads = 0;
+        try {
+            if (args.length != 3) {
+                throw new NumberFormatException();
+            }
+            time = Integer.parseInt(args[1]);
+            threads = Integer.parseInt(args[2]);
+            if (time < 1 || threads < 1) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: milliseconds and threads must be positive integers");
+            System.exit(1);
+        }
+        Board[] positions = new Board[SEARCH_POSITIONS];
+        char[] colours = new char[SEARCH_POSITIONS];
+        searchPositions(positions, colours);
+        // searching every position once before timing anything, so the single threaded search isn't timed while the JIT compiler warms up
+        MctsEngine warmup = new MctsEngine(time, 64, threads);
+        for (int i = 0; i < SEARCH_POSITIONS; i++) {
+            warmup.selectMove(positions[i], colours[i]);
+        }
+        double singleThreadRate = 0;
+        for (int threadCount : new int[] {1, threads}) {
+            long totalTime = 0;
+            long playouts = 0;
+            MctsEngine engine = new MctsEngine(time, 64, threadCount);
+            for (int i = 0; i < SEARCH_POSITIONS; i++) {
+                long start = System.nanoTime();
+                engine.selectMove(positions[i], colours[i]);
+                totalTime += System.nanoTime() - start;
+                playouts += engine.getPlayouts();
+            }
+            double rate = playouts * 1e9 / totalTime;
+            if (threadCount == 1) {
+                singleThreadRate = rate;
+            }
+            report("mcts " + time + "ms, " + threadCount + " thread(s)", playouts, totalTime, "playouts");
+            System.out.printf("%-32s %12.2fx%n", "speedup", rate / singleThreadRate);
+        }
+    }
+
+    // timing the endgame solver on positions with the given number of empty squares, both for the exact score and for only the winner,
+    // checking that the two agree, then checking its best moves
+    private static void endgameBenchmark(String[] args) {
+        int empties = 0;
+        try {
+            if (args.length != 2) {
+                throw new NumberFormatException();
+            }
+            empties = Integer.parseInt(args[1]);
+            if (empties < 1 || empties > 40) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: empties must be an integer between 1 and 40");
+            System.exit(1);
+        }
+        // playing each game from a fixed seed, where games that end before reaching the empties are skipped
+        Board[] positions = new Board[ENDGAME_POSITIONS];
+        char[] colours = new char[ENDGAME_POSITIONS];
+        RandomEngine random = new RandomEngine(ENDGAME_POSITIONS);
+        AlphaBetaEngine player = new AlphaBetaEngine(0, ENDGAME_PLAY_DEPTH, 16);
+        for (int i = 0; i < ENDGAME_POSITIONS;) {
+            Board board = new Board();
+            char colour = 'D';
+            int moves = 0;
+            while (Long.bitCount(board.getEmpty()) > empties && (board.legalMoves('D') | board.legalMoves('L')) != 0) {
+                if (board.legalMoves(colour) != 0) {
+                    int move = moves++ < ENDGAME_RANDOM_MOVES ? random.selectMove(board, colour) : player.searchToDepth(board, colour, ENDGAME_PLAY_DEPTH);
+                    board.makeMove(colour, move);
+                }
+                colour = Board.opponent(colour);
+            }
+            if (Long.bitCount(board.getEmpty()) == empties) {
+                positions[i] = board;
+                colours[i] = colour;
+                i++;
+            }
+        }
+        EndgameSolver solver = new EndgameSolver(64);
+        long exactTime = 0;
+        long exactLongest = 0;
+        long resultTime = 0;
+        long resultLongest = 0;
+        long nodes = 0;
+        for (int i = 0; i < ENDGAME_POSITIONS; i++) {
+            // finding the winner first, as an exact solve would leave the answer in the transposition table
+            long start = System.nanoTime();
+            int result = solver.solveResult(positions[i], colours[i]);
+            long time = System.nanoTime() - start;
+            resultTime += time;
+            resultLongest = Math.max(resultLongest, time);
+            solver.clear();
+            start = System.nanoTime();
+            int score = solver.solve(positions[i], colours[i]);
+            time = System.nanoTime() - start;
+            nodes += solver.getNodes();
+            exactTime += time;
+            exactLongest = Math.max(exactLongest, time);
+            check("endgame position " + i + " result", result, Integer.signum(score));
+        }
+        checkBestMoves();
+        report("endgame " + empties + " empties, exact", nodes, exactTime, "nodes");
+        System.out.printf("%-32s %10.3f ms average %10.3f ms longest%n", "exact score", exactTime / 1e6 / ENDGAME_POSITIONS, exactLongest / 1e6);
+        System.out.printf("%-32s %10.3f ms average %10.3f ms longest%n", "win, loss or draw", resultTime / 1e6 / ENDGAME_POSITIONS, resultLongest / 1e6);
+    }
+
+    // checking the solver's best moves on positions from random games, as a solver is reused from move to move in games and must still
+    // find a best move when the position is already in its table, either solved or with only its winner found
+    // a move is checked by solving the position after it with a fresh table, as any of several equally good moves is fine
+    private static void checkBestMoves() {
+        EndgameSolver solver = new EndgameSolver(1);
+        EndgameSolver checker = new EndgameSolver(1);
+        RandomEngine random = new RandomEngine(BEST_MOVE_POSITIONS);
+        for (int i = 0; i < BEST_MOVE_POSITIONS; i++) {
+            Board board = new Board();
+            char colour = 'D';
+            int empties = BEST_MOVE_FEWEST_EMPTIES + i % (BEST_MOVE_MOST_EMPTIES - BEST_MOVE_FEWEST_EMPTIES + 1);
+            while (Long.bitCount(board.getEmpty()) > empties && (board.legalMoves('D') | board.legalMoves('L')) != 0) {
+                if (board.legalMoves(colour) != 0) {
+                    board.makeMove(colour, random.selectMove(board, colour));
+                }
+                colour = Board.opponent(colour);
+            }
+            if (board.legalMoves(colour) == 0) {
+                continue;
+            }
+            checker.clear();
+            int score = checker.solve(board, colour);
+            solver.clear();
+            solver.solve(board, colour);
+            checkBestMove("endgame best move check " + i + " solved twice", solver, checker, board, colour, score);
+            solver.clear();
+            solver.solveResult(board, colour);
+            checkBestMove("endgame best move check " + i + " solved after its result", solver, checker, board, colour, score);
+        }
+        System.out.println("checked best moves in " + BEST_MOVE_POSITIONS + " positions");
+    }
+
+    // solving the position with the solver as it was left, exiting with an error if the score isn't the given one or if the position
+    // after its best move doesn't have the same score
+    private static void checkBestMove(String name, EndgameSolver solver, EndgameSolver checker, Board position, char colour, int expected) {
+        check(name + " score", solver.solve(position, colour), expected);
+        Board after = new Board(position.getTiles('D'), position.getTiles('L'));
+        after.makeMove(colour, solver.getBestMove());
+        checker.clear();
+        check(name + " best move " + Board.moveToString(solver.getBestMove()) + " score", -checker.solve(after, Board.opponent(colour)), expected);
+    }
+
+    // counting the leaf positions reached after the given number of moves, where the player is the one to move
+    static long perft(long player, long opponent, int depth, boolean passed) {
+        if (depth == 0) {
+            return 1;
+        }
+        long moves = Board.legalMoves(player, opponent);
+        if (moves == 0) {
+            // both players passing ends the game, which counts as a leaf
+            if (passed) {
+                return 1;
+            }
+            return perft(opponent, player, depth - 1, true);
+        }
+        long nodes = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flipped = Board.flips(player, opponent, square);
+            nodes += perft(opponent & ~flipped, player | flipped | (1L << square), depth - 1, false);
+        }
+        return nodes;
+    }
+
+    // storing every position at the given depth in the sample arrays
+    private static void collect(long player, long opponent, int depth) {
+        if (depth == 0) {
+            samplePlayers[sampleCount] = player;
+            sampleOpponents[sampleCount] = opponent;
+            sampleCount++;
+            return;
+        }
+        for (long moves = Board.legalMoves(player, opponent); moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flipped = Board.flips(player, opponent, square);
+            collect(opponent & ~flipped, player | flipped | (1L << square), depth - 1);
+        }
+    }
+
+    // counting the legal moves from every sample position
+    private static long countMoves() {
+        long moves = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            moves += Long.bitCount(Board.legalMoves(samplePlayers[i], sampleOpponents[i]));
+        }
+        return moves;
+    }
+
+    // making every legal move from every sample position on a board, counting the moves made
+    private static long makeMoves() {
+        Board board = new Board();
+        long moves = 0;
+        long flippedTiles = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            // the sample depth is odd, so lights are to move in every sample position
+            for (long legal = Board.legalMoves(samplePlayers[i], sampleOpponents[i]); legal != 0; legal &= legal - 1) {
+                board.setTiles(sampleOpponents[i], samplePlayers[i]);
+                flippedTiles += Long.bitCount(board.makeMove('L', Long.numberOfTrailingZeros(legal)));
+                moves++;
+            }
+        }
+        // every move flips at least one tile
+        if (flippedTiles < moves) {
+            throw new IllegalStateException("moves made without flipping any tiles");
+        }
+        return moves;
+    }
+
+    // exiting with an error if a benchmark's count doesn't match the published count
+    private static void check(String name, long count, long expected) {
+        if (count != expected) {
+            System.err.println("ERROR: " + name + " counted " + count + ", expected " + expected);
+            System.exit(1);
+        }
+    }
+
+    // printing the time and throughput of a benchmark
+    private static void report(String name, long operations, long nanos, String unit) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-32s %12d %-9s %10.3f ms %14.0f %s/sec%n", name, operations, unit, nanos / 1e6, operations / seconds, unit);
+    }
+}
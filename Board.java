@@ -0,0 +1,289 @@
+// Reversi board stored as two 64-bit bitboards, one for the dark tiles and one for the light tiles
+// squares are numbered row by row, so the tile at board[row][column] is bit (row * 8 + column)
+public class Board {
+    // mask of every square apart from the first and last columns, used to stop lines wrapping from one side of the board onto the other
+    private static final long INNER_COLUMNS = 0x7e7e7e7e7e7e7e7eL;
+    // most moves and passes the undo stack holds, which is more than a game can have
+    private static final int MAX_UNDO = 128;
+    // entry on the undo stack for a pass, in place of the square
+    public static final int PASS = 64;
+
+    private long dark;
+    private long light;
+    // moves and passes made with pushMove and pushPass, with the tiles each move flipped and the square and colour of each, so they can be
+    // taken back with popMove without copying the board
+    // the stack is only allocated by the first pushMove or pushPass, as most boards never use it
+    private long[] undoFlipped = null;
+    private byte[] undoMoves = null;
+    private int undoCount = 0;
+
+    // creating board with the standard Othello opening
+    public Board() {
+        reset();
+    }
+
+    // creating board with the given dark and light tiles
+    public Board(long dark, long light) {
+        this.dark = dark;
+        this.light = light;
+    }
+
+    // resetting board to the Othello opening, where the light tiles are along the left diagonal and the dark tiles are along the right diagonal
+    public void reset() {
+        dark = bit(3, 4) | bit(4, 3);
+        light = bit(3, 3) | bit(4, 4);
+    }
+
+    // replacing the tiles on the board with the given dark and light tiles
+    public void setTiles(long dark, long light) {
+        this.dark = dark;
+        this.light = light;
+    }
+
+    // getting the tile at the given row and column (both starting at 0), returning D for darks, L for lights and a space if empty
+    public char getTile(int row, int column) {
+        long square = bit(row, column);
+        if ((dark & square) != 0) {
+            return 'D';
+        }
+        else if ((light & square) != 0) {
+            return 'L';
+        }
+        return ' ';
+    }
+
+    // getting the bitboard of all tiles of the given colour
+    public long getTiles(char colour) {
+        return colour == 'D' ? dark : light;
+    }
+
+    // getting the bitboard of all empty squares
+    public long getEmpty() {
+        return ~(dark | light);
+    }
+
+    // counting the tiles of the given colour
+    public int countTiles(char colour) {
+        return Long.bitCount(getTiles(colour));
+    }
+
+    // getting the bitboard of all moves the given colour can legally make
+    public long legalMoves(char colour) {
+        return colour == 'D' ? legalMoves(dark, light) : legalMoves(light, dark);
+    }
+
+    // checking if the given colour can legally place a tile on the given square
+    public boolean isLegalMove(char colour, int square) {
+        return square >= 0 && square < 64 && (legalMoves(colour) & (1L << square)) != 0;
+    }
+
+    // placing a tile of the given colour at the given row and column (both starting at 0) and flipping all bounded opponent tiles, returning the flipped tiles
+    public long makeMove(char colour, int row, int column) {
+        return makeMove(colour, row * 8 + column);
+    }
+
+    // placing a tile of the given colour on the given square and flipping all bounded opponent tiles, returning the flipped tiles
+    public long makeMove(char colour, int square) {
+        long placed = 1L << square;
+        long flipped;
+        if (colour == 'D') {
+            flipped = flips(dark, light, square);
+            dark |= placed | flipped;
+            light &= ~flipped;
+        }
+        else {
+            flipped = flips(light, dark, square);
+            light |= placed | flipped;
+            dark &= ~flipped;
+        }
+        return flipped;
+    }
+
+    // making a move like makeMove, but keeping what it flipped on the undo stack so popMove can take it back
+    public long pushMove(char colour, int square) {
+        long flipped = makeMove(colour, square);
+        push(colour, square, flipped);
+        return flipped;
+    }
+
+    // recording a pass on the undo stack, so taking back moves also takes back the passes between them
+    public void pushPass(char colour) {
+        push(colour, PASS, 0);
+    }
+
+    private void push(char colour, int square, long flipped) {
+        if (undoFlipped == null) {
+            undoFlipped = new long[MAX_UNDO];
+            undoMoves = new byte[MAX_UNDO];
+        }
+        if (undoCount == MAX_UNDO) {
+            throw new IllegalStateException("More than " + MAX_UNDO + " moves and passes to undo");
+        }
+        undoFlipped[undoCount] = flipped;
+        // the colour is kept in the top bit, above the square or PASS
+        undoMoves[undoCount] = (byte) (colour == 'D' ? square : square | 0x80);
+        undoCount++;
+    }
+
+    // taking back the last move or pass on the undo stack in constant time, returning the colour that made it, which is the colour to move again
+    // throws an IllegalStateException if there is nothing to take back
+    public char popMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No moves to undo");
+        }
+        undoCount--;
+        long flipped = undoFlipped[undoCount];
+        int square = undoMoves[undoCount] & 0x7f;
+        char colour = (undoMoves[undoCount] & 0x80) == 0 ? 'D' : 'L';
+        if (square != PASS) {
+            long placed = 1L << square;
+            if (colour == 'D') {
+                dark &= ~(placed | flipped);
+                light |= flipped;
+            }
+            else {
+                light &= ~(placed | flipped);
+                dark |= flipped;
+            }
+        }
+        return colour;
+    }
+
+    // getting whether the last entry on the undo stack is a pass, which must only be asked when there is one
+    public boolean lastWasPass() {
+        return (undoMoves[undoCount - 1] & 0x7f) == PASS;
+    }
+
+    // getting how many moves and passes can be taken back
+    public int getUndoCount() {
+        return undoCount;
+    }
+
+    // getting the square of an entry on the undo stack, counting from the oldest, or PASS for a pass, so the game so far can be replayed
+    public int getUndoSquare(int index) {
+        return undoMoves[index] & 0x7f;
+    }
+
+    // getting the colour that made an entry on the undo stack, counting from the oldest
+    public char getUndoColour(int index) {
+        return (undoMoves[index] & 0x80) == 0 ? 'D' : 'L';
+    }
+
+    // getting the bit for the square at the given row and column (both starting at 0)
+    public static long bit(int row, int column) {
+        return 1L << (row * 8 + column);
+    }
+
+    // getting the square of a move written as <row_number>,<column_number> starting at the given index of the text
+    // returns -1 if the text isn't exactly a move on the board, without creating any objects
+    public static int parseMove(String text, int start) {
+        if (text.length() != start + 3 || text.charAt(start + 1) != ',') {
+            return -1;
+        }
+        int row = text.charAt(start) - '1';
+        int column = text.charAt(start + 2) - '1';
+        if (row < 0 || row > 7 || column < 0 || column > 7) {
+            return -1;
+        }
+        return row * 8 + column;
+    }
+
+    // writing the given square as <row_number>,<column_number>, which is the format used by the user and the MOVE message
+    public static String moveToString(int square) {
+        return (square / 8 + 1) + "," + (square % 8 + 1);
+    }
+
+    // getting the colour of the other player
+    public static char opponent(char colour) {
+        return colour == 'D' ? 'L' : 'D';
+    }
+
+    // getting all empty squares where the player bounds at least one line of opponent tiles
+    public static long legalMoves(long player, long opponent) {
+        // opponent tiles on the first or last column can't be bounded sideways, which also stops lines wrapping onto the next row
+        long inner = opponent & INNER_COLUMNS;
+        long moves = movesLeft(player, inner, 1) | movesRight(player, inner, 1)
+                | movesLeft(player, opponent, 8) | movesRight(player, opponent, 8)
+                | movesLeft(player, inner, 7) | movesRight(player, inner, 7)
+                | movesLeft(player, inner, 9) | movesRight(player, inner, 9);
+        return moves & ~(player | opponent);
+    }
+
+    // getting the opponent tiles that would be flipped if the player placed a tile on the given square
+    public static long flips(long player, long opponent, int square) {
+        long placed = 1L << square;
+        long inner = opponent & INNER_COLUMNS;
+        return flipsLeft(placed, player, inner, 1) | flipsRight(placed, player, inner, 1)
+                | flipsLeft(placed, player, opponent, 8) | flipsRight(placed, player, opponent, 8)
+                | flipsLeft(placed, player, inner, 7) | flipsRight(placed, player, inner, 7)
+                | flipsLeft(placed, player, inner, 9) | flipsRight(placed, player, inner, 9);
+    }
+
+    // getting the tiles with the rows in reverse order, which is the board flipped top to bottom
+    public static long flipRows(long tiles) {
+        return Long.reverseBytes(tiles);
+    }
+
+    // getting the tiles with the columns in reverse order, which is the board flipped left to right
+    public static long flipColumns(long tiles) {
+        tiles = ((tiles >>> 1) & 0x5555555555555555L) | ((tiles & 0x5555555555555555L) << 1);
+        tiles = ((tiles >>> 2) & 0x3333333333333333L) | ((tiles & 0x3333333333333333L) << 2);
+        return ((tiles >>> 4) & 0x0f0f0f0f0f0f0f0fL) | ((tiles & 0x0f0f0f0f0f0f0f0fL) << 4);
+    }
+
+    // getting the tiles with rows and columns swapped, which is the board flipped along the diagonal through 1,1 and 8,8
+    // each step swaps the blocks on either side of the diagonal, from 4x4 blocks down to single squares
+    public static long transpose(long tiles) {
+        long swap = 0x0f0f0f0f00000000L & (tiles ^ (tiles << 28));
+        tiles ^= swap ^ (swap >>> 28);
+        swap = 0x3333000033330000L & (tiles ^ (tiles << 14));
+        tiles ^= swap ^ (swap >>> 14);
+        swap = 0x5500550055005500L & (tiles ^ (tiles << 7));
+        return tiles ^ swap ^ (swap >>> 7);
+    }
+
+    // getting the squares just past each line of opponent tiles that starts next to one of the player's tiles, going towards higher squares
+    // a line can hold at most six opponent tiles, so the line is grown six times without any loops or branches
+    private static long movesLeft(long player, long opponent, int step) {
+        long line = (player << step) & opponent;
+        line |= (line << step) & opponent;
+        line |= (line << step) & opponent;
+        line |= (line << step) & opponent;
+        line |= (line << step) & opponent;
+        line |= (line << step) & opponent;
+        return line << step;
+    }
+
+    // same as movesLeft, going towards lower squares
+    private static long movesRight(long player, long opponent, int step) {
+        long line = (player >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        return line >>> step;
+    }
+
+    // getting the line of opponent tiles going towards higher squares from the placed tile, if one of the player's tiles closes it off
+    private static long flipsLeft(long placed, long player, long opponent, int step) {
+        long line = (placed << step) & opponent;
+        line |= (line << step) & opponent;
+        line |= (line << step) & opponent;
+        line |= (line << step) & opponent;
+        line |= (line << step) & opponent;
+        line |= (line << step) & opponent;
+        return ((line << step) & player) != 0 ? line : 0;
+    }
+
+    // same as flipsLeft, going towards lower squares
+    private static long flipsRight(long placed, long player, long opponent, int step) {
+        long line = (placed >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        line |= (line >>> step) & opponent;
+        return ((line >>> step) & player) != 0 ? line : 0;
+    }
+}
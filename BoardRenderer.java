@@ -0,0 +1,193 @@
+import java.io.PrintStream;
+
+// draws the board for a game into a reused byte buffer, so printing the board after every move doesn't build any strings
+// in plain mode the whole board is printed each time, laid out as it always has been, with the legal moves of the player to move marked *
+// in ANSI mode the board stays at a fixed place on the screen: it is drawn once, and after that only the squares that changed since the
+// last draw (the new tile, the flipped tiles and the legal moves that came and went) are redrawn with cursor positioning, so a screen
+// showing many games at once is only sent a few bytes a square
+public class BoardRenderer {
+    // lines and columns the board takes up on the screen
+    public static final int HEIGHT = 18;
+    public static final int WIDTH = 19;
+    private static final int BUFFER_SIZE = 4096;
+    private static final String HEADER = "   1 2 3 4 5 6 7 8";
+    private static final String SEPARATOR = "  -----------------";
+    // ANSI control sequences, for saving and restoring the cursor around a draw so text printed below the board isn't disturbed
+    private static final String SAVE_CURSOR = "\0337";
+    private static final String RESTORE_CURSOR = "\0338";
+    private static final String RESET = "\033[0m";
+    private static final String DARK_STYLE = "\033[1;30;42m";
+    private static final String LIGHT_STYLE = "\033[1;97;42m";
+    private static final String MOVE_STYLE = "\033[1;33;42m";
+    private static final String EMPTY_STYLE = "\033[42m";
+
+    private final PrintStream out;
+    private final boolean ansi;
+    // screen line and column of the board's top left corner in ANSI mode, counting from 1
+    private final int top;
+    private final int left;
+    // whether the lines below the board were made the screen's scrolling region, which is undone by close
+    private boolean scrollRegion = false;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int length = 0;
+    // what was on the screen after the last draw in ANSI mode
+    private boolean drawn = false;
+    private long shownDark = 0;
+    private long shownLight = 0;
+    private long shownMoves = 0;
+    // cursor position and style while drawing in ANSI mode, so moving along a line and repeating a style can be left out
+    private int cursorLine;
+    private int cursorColumn;
+    private String style;
+
+    // printing the whole board each time
+    public BoardRenderer(PrintStream out) {
+        this(out, false, 1, 1);
+    }
+
+    // drawing the board at the given screen line and column with ANSI control sequences, and after that only redrawing what changed
+    public BoardRenderer(PrintStream out, int top, int left) {
+        this(out, true, top, left);
+    }
+
+    private BoardRenderer(PrintStream out, boolean ansi, int top, int left) {
+        this.out = out;
+        this.ansi = ansi;
+        this.top = top;
+        this.left = left;
+    }
+
+    // making an ANSI renderer for a game at the terminal, which clears the screen and keeps the board at the top, with the lines below
+    // it made a scrolling region for the game's messages
+    public static BoardRenderer atTopOfScreen(PrintStream out) {
+        BoardRenderer renderer = new BoardRenderer(out, 1, 1);
+        // clearing the screen, then setting the scrolling region (which moves the cursor to the top) and moving below the board
+        renderer.put("\033[2J\033[").putInt(HEIGHT + 2).put("r\033[").putInt(HEIGHT + 2).put(";1H");
+        renderer.flush();
+        renderer.scrollRegion = true;
+        return renderer;
+    }
+
+    // drawing the board, marking the given legal moves, which are the moves of the player to move or 0 to mark none
+    public void render(Board board, long moves) {
+        long dark = board.getTiles('D');
+        long light = board.getTiles('L');
+        if (!ansi) {
+            put('\n').put(HEADER).put('\n').put(SEPARATOR).put('\n');
+            for (int row = 0; row < 8; row++) {
+                putInt(row + 1).put(" |");
+                for (int column = 0; column < 8; column++) {
+                    put(tile(dark, light, moves, Board.bit(row, column))).put('|');
+                }
+                put('\n').put(SEPARATOR).put('\n');
+            }
+            put('\n');
+            flush();
+            return;
+        }
+        put(SAVE_CURSOR);
+        cursorLine = -1;
+        style = null;
+        if (!drawn) {
+            moveTo(top, left).put(HEADER);
+            moveTo(top + 1, left).put(SEPARATOR);
+            for (int row = 0; row < 8; row++) {
+                moveTo(top + 2 + 2 * row, left).putInt(row + 1).put(" |");
+                for (int column = 0; column < 8; column++) {
+                    putSquare(dark, light, moves, Board.bit(row, column)).put(RESET).put('|');
+                    style = null;
+                }
+                moveTo(top + 3 + 2 * row, left).put(SEPARATOR);
+            }
+            drawn = true;
+        }
+        else {
+            long changed = (dark ^ shownDark) | (light ^ shownLight) | (moves ^ shownMoves);
+            while (changed != 0) {
+                int square = Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                moveTo(top + 2 + 2 * (square / 8), left + 3 + 2 * (square % 8));
+                putSquare(dark, light, moves, 1L << square);
+            }
+        }
+        if (style != null) {
+            put(RESET);
+        }
+        put(RESTORE_CURSOR);
+        flush();
+        shownDark = dark;
+        shownLight = light;
+        shownMoves = moves;
+    }
+
+    // giving the whole screen back as the scrolling region if this renderer took the lines below the board
+    public void close() {
+        if (scrollRegion) {
+            // resetting the scrolling region moves the cursor to the top, so the cursor is saved around it
+            put(SAVE_CURSOR).put("\033[r").put(RESTORE_CURSOR);
+            flush();
+            scrollRegion = false;
+        }
+    }
+
+    private static char tile(long dark, long light, long moves, long square) {
+        return (dark & square) != 0 ? 'D' : (light & square) != 0 ? 'L' : (moves & square) != 0 ? '*' : ' ';
+    }
+
+    private BoardRenderer putSquare(long dark, long light, long moves, long square) {
+        char tile = tile(dark, light, moves, square);
+        String squareStyle = tile == 'D' ? DARK_STYLE : tile == 'L' ? LIGHT_STYLE : tile == '*' ? MOVE_STYLE : EMPTY_STYLE;
+        if (squareStyle != style) {
+            put(squareStyle);
+            style = squareStyle;
+        }
+        cursorColumn++;
+        return put(tile);
+    }
+
+    // moving the cursor to a place on the screen, just moving it right if it is already further left on the same line
+    private BoardRenderer moveTo(int line, int column) {
+        if (line == cursorLine && column > cursorColumn) {
+            put("\033[");
+            if (column - cursorColumn > 1) {
+                putInt(column - cursorColumn);
+            }
+            put('C');
+        }
+        else {
+            put("\033[").putInt(line).put(';').putInt(column).put('H');
+        }
+        cursorLine = line;
+        cursorColumn = column;
+        return this;
+    }
+
+    private BoardRenderer put(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            put(text.charAt(i));
+        }
+        return this;
+    }
+
+    private BoardRenderer put(char character) {
+        if (length == BUFFER_SIZE) {
+            flush();
+        }
+        buffer[length++] = (byte) character;
+        return this;
+    }
+
+    // writing a small positive number without making a string of it
+    private BoardRenderer putInt(int number) {
+        if (number >= 10) {
+            putInt(number / 10);
+        }
+        return put((char) ('0' + number % 10));
+    }
+
+    private void flush() {
+        out.write(buffer, 0, length);
+        out.flush();
+        length = 0;
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.Scanner;
+
+// player that types their moves into the terminal
+// if the user exits the program with Ctrl+C or Ctrl+D, selectMove throws a NoSuchElementException
+public class ConsoleEngine implements Engine {
+    private final Scanner console;
+    // whether the user can type undo to take back their last move, which is only possible in a local game
+    private final boolean takebacks;
+
+    public ConsoleEngine(Scanner console) {
+        this(console, false);
+    }
+
+    public ConsoleEngine(Scanner console, boolean takebacks) {
+        this.console = console;
+        this.takebacks = takebacks;
+    }
+
+    public int selectMove(Board board, char colour) {
+        long possibleMoves = board.legalMoves(colour);
+        // printing out possible moves with tab in between each move to separate them
+        System.out.print("Possible Moves: ");
+        for (long s = possibleMoves; s != 0; s &= s - 1) {
+            System.out.print(Board.moveToString(Long.numberOfTrailingZeros(s)) + "\t");
+        }
+        String prompt = "\nPlease enter your move (format: <row_number>,<column_number>)" + (takebacks ? ", or undo to take back your last move: " : ": ");
+        System.out.println(prompt);
+        // loop until the user input is a valid move, checking the move's bit in the possible moves
+        String input = console.nextLine().trim();
+        int userMove = Board.parseMove(input, 0);
+        while (userMove < 0 || (possibleMoves & (1L << userMove)) == 0) {
+            if (takebacks && input.equals("undo")) {
+                return TAKEBACK;
+            }
+            System.err.println("ERROR: Incorrect format for move selection, please try again");
+            System.out.println(prompt);
+            input = console.nextLine().trim();
+            userMove = Board.parseMove(input, 0);
+        }
+        return userMove;
+    }
+}
@@ -0,0 +1,541 @@
+// exact solver for positions near the end of the game, finding the final tile difference with perfect play from both players
+// the tile difference is counted the same way as the result at the end of a game, where empty squares don't count for either player
+// empty squares are kept in a linked list ordered by how good the squares are, and moves into regions with an odd number of empties are tried first,
+// the last four empties are solved by their own routines, and with more empties the moves leaving the opponent fewest replies go first
+public class EndgameSolver {
+    // most empties that abandoned games are adjudicated with, as finding the winner with that many takes well under a second
+    public static final int ADJUDICATION_EMPTIES = 20;
+    // with more empties than this, moves are sorted by the opponent's replies instead of just by parity
+    private static final int FASTEST_FIRST_EMPTIES = 5;
+    // with at least this many empties, solved positions are stored in the transposition table
+    private static final int TABLE_EMPTIES = 6;
+    // with more empties than this, every move's position is looked up in the table before searching any of them
+    private static final int ETC_EMPTIES = 12;
+    // the opponent's stable tiles are only counted when the player is at least level, as they rarely cut anything off otherwise
+    private static final int STABILITY_ALPHA = 0;
+    private static final int INFINITY = 100;
+    // sentinel at the start and end of the empties list
+    private static final int LIST_END = 64;
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long LEFT_COLUMN = 0x0101010101010101L;
+    private static final long RIGHT_COLUMN = 0x8080808080808080L;
+
+    // squares in the order they are tried, with corners first and the squares next to the corners last
+    private static final int[] SQUARE_ORDER = {
+        0, 7, 56, 63,
+        2, 5, 16, 23, 40, 47, 58, 61,
+        3, 4, 24, 31, 32, 39, 59, 60,
+        18, 21, 42, 45,
+        19, 20, 26, 29, 34, 37, 43, 44,
+        27, 28, 35, 36,
+        10, 11, 12, 13, 17, 22, 25, 30, 33, 38, 41, 46, 50, 51, 52, 53,
+        1, 6, 8, 15, 48, 55, 57, 62,
+        9, 14, 49, 54
+    };
+    // bit for the quadrant of the board each square is in
+    private static final int[] QUADRANT = new int[64];
+
+    // squares on the edge of the board, which can't be flipped along the directions leading off the board
+    private static final long EDGE_COLUMNS = 0x8181818181818181L;
+    private static final long EDGE_ROWS = 0xff000000000000ffL;
+    private static final long EDGES = EDGE_COLUMNS | EDGE_ROWS;
+    // masks of every row, column and diagonal, for finding the ones with no empty squares left
+    private static final long[] ROWS = new long[8];
+    private static final long[] COLUMNS = new long[8];
+    private static final long[] DIAGONALS = new long[15];
+    private static final long[] ANTI_DIAGONALS = new long[15];
+    // squares around each square, as a move can only flip tiles if one of the squares around it holds an opponent's tile
+    private static final long[] NEIGHBOURS = new long[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int row = square / 8;
+            int column = square % 8;
+            QUADRANT[square] = 1 << ((row >= 4 ? 2 : 0) + (column >= 4 ? 1 : 0));
+            ROWS[row] |= 1L << square;
+            COLUMNS[column] |= 1L << square;
+            DIAGONALS[row - column + 7] |= 1L << square;
+            ANTI_DIAGONALS[row + column] |= 1L << square;
+            for (int rowStep = -1; rowStep <= 1; rowStep++) {
+                for (int columnStep = -1; columnStep <= 1; columnStep++) {
+                    int r = row + rowStep;
+                    int c = column + columnStep;
+                    if ((rowStep != 0 || columnStep != 0) && r >= 0 && r < 8 && c >= 0 && c < 8) {
+                        NEIGHBOURS[square] |= Board.bit(r, c);
+                    }
+                }
+            }
+        }
+    }
+
+    // doubly linked list of empty squares, in the square order
+    private final int[] next = new int[65];
+    private final int[] previous = new int[65];
+    // bit set for each quadrant with an odd number of empties
+    private int parity;
+    private final TranspositionTable table;
+    // move lists for each number of empties, allocated once so the solver doesn't create any objects
+    private final int[][] moveLists = new int[61][32];
+    private final int[][] moveOrder = new int[61][32];
+    private final long[][] flipLists = new long[61][32];
+    private int rootEmpties;
+    private int bestMove;
+    private long nodes;
+
+    // creating a solver with a transposition table of the given number of megabytes
+    public EndgameSolver(int tableMegabytes) {
+        table = new TranspositionTable(tableMegabytes);
+    }
+
+    // solving the position with the given colour to move, returning how many more tiles that colour ends the game with under perfect play
+    // the score is found with null window searches that halve the range of possible scores each time, which with the transposition table
+    // visits fewer positions than one search with the full window
+    public int solve(Board board, char colour) {
+        long player = board.getTiles(colour);
+        long opponent = board.getTiles(Board.opponent(colour));
+        setUp(player, opponent);
+        int lower = -64;
+        int upper = 64;
+        int move = -1;
+        while (lower < upper) {
+            int middle = (lower + upper + 1) >> 1;
+            int score = search(player, opponent, middle - 1, middle, rootEmpties, false);
+            // a score of at least the middle is a lower bound and comes with a move reaching it, anything else is an upper bound
+            if (score >= middle) {
+                lower = score;
+                move = bestMove;
+            }
+            else {
+                upper = score;
+                if (move < 0) {
+                    move = bestMove;
+                }
+            }
+        }
+        bestMove = move;
+        return lower;
+    }
+
+    // solving only whether the colour to move wins, loses or draws with perfect play, returning 1, -1 or 0,
+    // which is a single search with a narrow window and so several times quicker than finding the exact score
+    public int solveResult(Board board, char colour) {
+        long player = board.getTiles(colour);
+        long opponent = board.getTiles(Board.opponent(colour));
+        setUp(player, opponent);
+        return Integer.signum(search(player, opponent, -1, 1, rootEmpties, false));
+    }
+
+    // building the empties list in the square order and working out the parity of each quadrant
+    private void setUp(long player, long opponent) {
+        long empty = ~(player | opponent);
+        int last = LIST_END;
+        parity = 0;
+        for (int square : SQUARE_ORDER) {
+            if ((empty & (1L << square)) != 0) {
+                next[last] = square;
+                previous[square] = last;
+                last = square;
+                parity ^= QUADRANT[square];
+            }
+        }
+        next[last] = LIST_END;
+        previous[LIST_END] = last;
+        rootEmpties = Long.bitCount(empty);
+        bestMove = -1;
+        nodes = 0;
+    }
+
+    // getting the best move found by the last solve, or -1 if the colour to move had to pass
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    // removing every solved position from the transposition table
+    public void clear() {
+        table.clear();
+    }
+
+    // getting the number of positions visited by the last solve
+    public long getNodes() {
+        return nodes;
+    }
+
+    // getting the adjudicated result of an unfinished game from the given player's point of view (YOU WIN, YOU LOSE or DRAW),
+    // or null if there are too many empties to solve quickly
+    public String adjudicate(Board board, char colourToMove, char player) {
+        if (Long.bitCount(board.getEmpty()) > ADJUDICATION_EMPTIES) {
+            return null;
+        }
+        int result = solveResult(board, colourToMove);
+        if (colourToMove != player) {
+            result = -result;
+        }
+        return result > 0 ? "YOU WIN" : result < 0 ? "YOU LOSE" : "DRAW";
+    }
+
+    // alpha-beta search with more than four empties, returning the final tile difference for the player to move
+    private int search(long player, long opponent, int alpha, int beta, int empties, boolean passed) {
+        // the root is searched here even with few empties, so the best move is known
+        if (empties <= 4 && empties != rootEmpties) {
+            return searchLastFour(player, opponent, alpha, beta, empties, passed);
+        }
+        nodes++;
+        // the player can't finish with more than the squares the opponent's stable tiles leave, so that bound can cut the search off
+        if (alpha >= STABILITY_ALPHA && empties != rootEmpties) {
+            int maximum = 64 - 2 * Long.bitCount(stableTiles(opponent, player | opponent));
+            if (maximum <= alpha) {
+                return maximum;
+            }
+        }
+        long moves = Board.legalMoves(player, opponent);
+        if (moves == 0) {
+            if (passed) {
+                return Long.bitCount(player) - Long.bitCount(opponent);
+            }
+            return -search(opponent, player, -beta, -alpha, empties, true);
+        }
+        long hash = 0;
+        int tableMove = -1;
+        int originalAlpha = alpha;
+        if (empties >= TABLE_EMPTIES) {
+            hash = hash(player, opponent);
+            long entry = table.probe(hash);
+            if (entry != 0) {
+                tableMove = TranspositionTable.move(entry);
+                // at the root the entry only orders the moves, as narrowing the window there could cut the search off on a move that
+                // isn't the best, leaving the score right but the best move wrong
+                if (empties != rootEmpties) {
+                    int score = TranspositionTable.score(entry);
+                    int kind = TranspositionTable.kind(entry);
+                    if (kind == TranspositionTable.EXACT) {
+                        return score;
+                    }
+                    else if (kind == TranspositionTable.LOWER_BOUND) {
+                        alpha = Math.max(alpha, score);
+                    }
+                    else if (kind == TranspositionTable.UPPER_BOUND) {
+                        beta = Math.min(beta, score);
+                    }
+                    if (alpha >= beta) {
+                        return score;
+                    }
+                }
+            }
+        }
+        int count = orderMoves(player, opponent, moves, tableMove, empties);
+        int[] moveList = moveLists[empties];
+        long[] flipList = flipLists[empties];
+        // enhanced transposition cutoff: a child already known to be bad enough for the opponent ends the search without searching anything
+        // the root's window is always the one it was called with, so a move cutting off there reaches the score the caller asked for
+        if (empties > ETC_EMPTIES) {
+            for (int i = 0; i < count; i++) {
+                long flipped = flipList[i];
+                long entry = table.probe(hash(opponent & ~flipped, player | flipped | (1L << moveList[i])));
+                if (entry != 0 && TranspositionTable.kind(entry) != TranspositionTable.LOWER_BOUND && -TranspositionTable.score(entry) >= beta) {
+                    if (empties == rootEmpties && !passed) {
+                        bestMove = moveList[i];
+                    }
+                    return -TranspositionTable.score(entry);
+                }
+            }
+        }
+        int best = -INFINITY;
+        int bestSquare = -1;
+        for (int i = 0; i < count; i++) {
+            int square = moveList[i];
+            long flipped = flipList[i];
+            // moves ordered by parity don't have their flips worked out yet, as a cutoff often comes before they are needed
+            if (flipped == 0) {
+                flipped = Board.flips(player, opponent, square);
+            }
+            removeEmpty(square);
+            int score;
+            // searching the first move with the full window and the rest with a null window, only searching again if a move beats the first
+            if (i == 0) {
+                score = -search(opponent & ~flipped, player | flipped | (1L << square), -beta, -alpha, empties - 1, false);
+            }
+            else {
+                score = -search(opponent & ~flipped, player | flipped | (1L << square), -alpha - 1, -alpha, empties - 1, false);
+                if (score > alpha && score < beta) {
+                    score = -search(opponent & ~flipped, player | flipped | (1L << square), -beta, -alpha, empties - 1, false);
+                }
+            }
+            restoreEmpty(square);
+            if (score > best) {
+                best = score;
+                bestSquare = square;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (empties == rootEmpties && !passed) {
+            bestMove = bestSquare;
+        }
+        if (empties >= TABLE_EMPTIES) {
+            int kind = best <= originalAlpha ? TranspositionTable.UPPER_BOUND : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            table.store(hash, empties, kind, best, bestSquare);
+        }
+        return best;
+    }
+
+    // filling the move list for the number of empties, returning the number of moves
+    // with many empties, the transposition table's move goes first and then the moves that leave the opponent the fewest replies,
+    // and with few empties the moves are taken from the empties list with the squares in odd quadrants first
+    private int orderMoves(long player, long opponent, long moves, int tableMove, int empties) {
+        int[] moveList = moveLists[empties];
+        long[] flipList = flipLists[empties];
+        int count = 0;
+        if (empties > FASTEST_FIRST_EMPTIES) {
+            int[] order = moveOrder[empties];
+            for (int square = next[LIST_END]; square != LIST_END; square = next[square]) {
+                long placed = 1L << square;
+                if ((moves & placed) == 0) {
+                    continue;
+                }
+                long flipped = Board.flips(player, opponent, square);
+                int priority;
+                if (square == tableMove) {
+                    priority = Integer.MAX_VALUE;
+                }
+                else {
+                    // the opponent's replies count most, with corners counted twice, then the empty squares next to the player's tiles
+                    // that the opponent could later move into, and last whether the move is in an odd quadrant
+                    long tiles = player | flipped | placed;
+                    long replies = Board.legalMoves(opponent & ~flipped, tiles);
+                    long around = ((tiles << 1) & ~LEFT_COLUMN) | ((tiles >>> 1) & ~RIGHT_COLUMN);
+                    around |= (around << 8) | (around >>> 8) | (tiles << 8) | (tiles >>> 8);
+                    priority = -(Long.bitCount(replies) + Long.bitCount(replies & CORNERS)) * 16 - Long.bitCount(around & ~(tiles | opponent)) * 2
+                        + ((parity & QUADRANT[square]) != 0 ? 1 : 0);
+                }
+                // insertion sort, which keeps the list order for moves of equal priority
+                int i = count++;
+                while (i > 0 && order[i - 1] < priority) {
+                    order[i] = order[i - 1];
+                    moveList[i] = moveList[i - 1];
+                    flipList[i] = flipList[i - 1];
+                    i--;
+                }
+                order[i] = priority;
+                moveList[i] = square;
+                flipList[i] = flipped;
+            }
+            return count;
+        }
+        for (int odd = 1; odd >= 0; odd--) {
+            for (int square = next[LIST_END]; square != LIST_END; square = next[square]) {
+                if ((moves & (1L << square)) != 0 && ((parity & QUADRANT[square]) != 0) == (odd == 1)) {
+                    flipList[count] = 0;
+                    moveList[count++] = square;
+                }
+            }
+        }
+        return count;
+    }
+
+    // solving the last four or fewer empties, taking the squares from the list with the squares in odd quadrants first
+    private int searchLastFour(long player, long opponent, int alpha, int beta, int empties, boolean passed) {
+        int[] squares = moveLists[0];
+        int count = 0;
+        for (int odd = 1; odd >= 0; odd--) {
+            for (int square = next[LIST_END]; square != LIST_END; square = next[square]) {
+                if (((parity & QUADRANT[square]) != 0) == (odd == 1)) {
+                    squares[count++] = square;
+                }
+            }
+        }
+        switch (empties) {
+            case 4:
+                return lastFour(player, opponent, alpha, beta, squares[0], squares[1], squares[2], squares[3], passed);
+            case 3:
+                return lastThree(player, opponent, alpha, beta, squares[0], squares[1], squares[2], passed);
+            case 2:
+                return lastTwo(player, opponent, alpha, beta, squares[0], squares[1], passed);
+            case 1:
+                return lastOne(player, opponent, squares[0]);
+            default:
+                return Long.bitCount(player) - Long.bitCount(opponent);
+        }
+    }
+
+    // solving four empties by trying each one and solving the other three
+    private int lastFour(long player, long opponent, int alpha, int beta, int square1, int square2, int square3, int square4, boolean passed) {
+        nodes++;
+        int best = -INFINITY;
+        long flipped = (NEIGHBOURS[square1] & opponent) != 0 ? Board.flips(player, opponent, square1) : 0;
+        if (flipped != 0) {
+            best = -lastThree(opponent & ~flipped, player | flipped | (1L << square1), -beta, -alpha, square2, square3, square4, false);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        flipped = (NEIGHBOURS[square2] & opponent) != 0 ? Board.flips(player, opponent, square2) : 0;
+        if (flipped != 0) {
+            int score = -lastThree(opponent & ~flipped, player | flipped | (1L << square2), -beta, -alpha, square1, square3, square4, false);
+            if (score >= beta) {
+                return score;
+            }
+            best = Math.max(best, score);
+            alpha = Math.max(alpha, score);
+        }
+        flipped = (NEIGHBOURS[square3] & opponent) != 0 ? Board.flips(player, opponent, square3) : 0;
+        if (flipped != 0) {
+            int score = -lastThree(opponent & ~flipped, player | flipped | (1L << square3), -beta, -alpha, square1, square2, square4, false);
+            if (score >= beta) {
+                return score;
+            }
+            best = Math.max(best, score);
+            alpha = Math.max(alpha, score);
+        }
+        flipped = (NEIGHBOURS[square4] & opponent) != 0 ? Board.flips(player, opponent, square4) : 0;
+        if (flipped != 0) {
+            int score = -lastThree(opponent & ~flipped, player | flipped | (1L << square4), -beta, -alpha, square1, square2, square3, false);
+            best = Math.max(best, score);
+        }
+        if (best == -INFINITY) {
+            // no moves, so the game is over if the opponent passed too, otherwise the opponent moves
+            if (passed) {
+                return Long.bitCount(player) - Long.bitCount(opponent);
+            }
+            return -lastFour(opponent, player, -beta, -alpha, square1, square2, square3, square4, true);
+        }
+        return best;
+    }
+
+    // solving three empties by trying each one and solving the other two
+    private int lastThree(long player, long opponent, int alpha, int beta, int square1, int square2, int square3, boolean passed) {
+        nodes++;
+        int best = -INFINITY;
+        long flipped = (NEIGHBOURS[square1] & opponent) != 0 ? Board.flips(player, opponent, square1) : 0;
+        if (flipped != 0) {
+            best = -lastTwo(opponent & ~flipped, player | flipped | (1L << square1), -beta, -alpha, square2, square3, false);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+        flipped = (NEIGHBOURS[square2] & opponent) != 0 ? Board.flips(player, opponent, square2) : 0;
+        if (flipped != 0) {
+            int score = -lastTwo(opponent & ~flipped, player | flipped | (1L << square2), -beta, -alpha, square1, square3, false);
+            if (score >= beta) {
+                return score;
+            }
+            best = Math.max(best, score);
+            alpha = Math.max(alpha, score);
+        }
+        flipped = (NEIGHBOURS[square3] & opponent) != 0 ? Board.flips(player, opponent, square3) : 0;
+        if (flipped != 0) {
+            int score = -lastTwo(opponent & ~flipped, player | flipped | (1L << square3), -beta, -alpha, square1, square2, false);
+            best = Math.max(best, score);
+        }
+        if (best == -INFINITY) {
+            if (passed) {
+                return Long.bitCount(player) - Long.bitCount(opponent);
+            }
+            return -lastThree(opponent, player, -beta, -alpha, square1, square2, square3, true);
+        }
+        return best;
+    }
+
+    // solving two empties by trying each one and solving the other
+    private int lastTwo(long player, long opponent, int alpha, int beta, int square1, int square2, boolean passed) {
+        nodes++;
+        int best = -INFINITY;
+        long flipped = (NEIGHBOURS[square1] & opponent) != 0 ? Board.flips(player, opponent, square1) : 0;
+        if (flipped != 0) {
+            best = -lastOne(opponent & ~flipped, player | flipped | (1L << square1), square2);
+            if (best >= beta) {
+                return best;
+            }
+        }
+        flipped = (NEIGHBOURS[square2] & opponent) != 0 ? Board.flips(player, opponent, square2) : 0;
+        if (flipped != 0) {
+            best = Math.max(best, -lastOne(opponent & ~flipped, player | flipped | (1L << square2), square1));
+        }
+        if (best == -INFINITY) {
+            if (passed) {
+                return Long.bitCount(player) - Long.bitCount(opponent);
+            }
+            return -lastTwo(opponent, player, -beta, -alpha, square1, square2, true);
+        }
+        return best;
+    }
+
+    // solving the last empty directly, where whoever can move there does, and otherwise the game ends with it empty
+    private int lastOne(long player, long opponent, int square) {
+        nodes++;
+        int difference = Long.bitCount(player) - Long.bitCount(opponent);
+        long flipped = (NEIGHBOURS[square] & opponent) != 0 ? Board.flips(player, opponent, square) : 0;
+        if (flipped != 0) {
+            return difference + 1 + 2 * Long.bitCount(flipped);
+        }
+        flipped = (NEIGHBOURS[square] & player) != 0 ? Board.flips(opponent, player, square) : 0;
+        if (flipped != 0) {
+            return difference - 1 - 2 * Long.bitCount(flipped);
+        }
+        return difference;
+    }
+
+    // finding tiles of one colour that can never be flipped, where a tile is stable if along each of the four lines through it
+    // the line is full, the tile is on the edge of the board, or a neighbour along the line is a stable tile of the same colour
+    private static long stableTiles(long tiles, long occupied) {
+        long fullRows = 0;
+        long fullColumns = 0;
+        for (int i = 0; i < 8; i++) {
+            if ((occupied & ROWS[i]) == ROWS[i]) {
+                fullRows |= ROWS[i];
+            }
+            if ((occupied & COLUMNS[i]) == COLUMNS[i]) {
+                fullColumns |= COLUMNS[i];
+            }
+        }
+        long fullDiagonals = 0;
+        long fullAntiDiagonals = 0;
+        for (int i = 0; i < 15; i++) {
+            if ((occupied & DIAGONALS[i]) == DIAGONALS[i]) {
+                fullDiagonals |= DIAGONALS[i];
+            }
+            if ((occupied & ANTI_DIAGONALS[i]) == ANTI_DIAGONALS[i]) {
+                fullAntiDiagonals |= ANTI_DIAGONALS[i];
+            }
+        }
+        // growing the stable tiles from the edges until no more are found, where shifts wrapping around the board only land on edge squares
+        long stable = 0;
+        while (true) {
+            long found = tiles
+                & (fullRows | EDGE_COLUMNS | (stable << 1) | (stable >>> 1))
+                & (fullColumns | EDGE_ROWS | (stable << 8) | (stable >>> 8))
+                & (fullDiagonals | EDGES | (stable << 9) | (stable >>> 9))
+                & (fullAntiDiagonals | EDGES | (stable << 7) | (stable >>> 7));
+            if (found == stable) {
+                return stable;
+            }
+            stable = found;
+        }
+    }
+
+    // taking a square out of the empties list once a tile is placed on it
+    private void removeEmpty(int square) {
+        next[previous[square]] = next[square];
+        previous[next[square]] = previous[square];
+        parity ^= QUADRANT[square];
+    }
+
+    // putting a square back in the empties list in the same place, once the move on it is taken back
+    private void restoreEmpty(int square) {
+        next[previous[square]] = square;
+        previous[next[square]] = square;
+        parity ^= QUADRANT[square];
+    }
+
+    // hashing the position by mixing both bitboards, which is cheaper than updating a Zobrist hash with every move in the solver
+    private static long hash(long player, long opponent) {
+        long hash = (player ^ Long.rotateLeft(opponent, 31)) * 0x9e3779b97f4a7c15L + opponent;
+        hash = (hash ^ (hash >>> 32)) * 0xd6e8feb86659fd93L;
+        return hash ^ (hash >>> 32);
+    }
+}
@@ -0,0 +1,17 @@
+// a computer player that picks which move to make on a board
+public interface Engine {
+    // returned by selectMove instead of a square by a player that wants to take back its last move, which only local games allow
+    int TAKEBACK = -1;
+
+    // choosing a move for the given colour, returning the square (row * 8 + column) to place a tile on
+    // only called when the colour has at least one legal move
+    int selectMove(Board board, char colour);
+
+    // told the final board once a local game is over, for players that have to tell someone else the game ended
+    default void gameOver(Board board, char colour) {
+    }
+
+    // letting go of anything the player holds, such as another program it plays through, once it won't play again
+    default void close() {
+    }
+}
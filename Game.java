@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.NoSuchElementException;
+
+// one game of Reversi against an opponent on the other end of a connection, played with the MOVE/PASS/ERROR/result messages
+// the local moves come from an engine, which is either the user at the terminal or a computer player
+// the game never reads System.in or exits the process, so many games can run at once in one process
+public class Game implements Runnable {
+    private final GameConnection connection;
+    private final char currentColour;
+    private final char opponentsColour;
+    private final Engine player;
+    // where the board and game messages are printed, or null to play without printing anything
+    private final PrintStream display;
+    // draws the board on the display, or null if there is no display
+    private BoardRenderer renderer;
+    private final Board board = new Board();
+    // result of the game from the local player's point of view (YOU WIN, YOU LOSE, DRAW or ERROR), or null while it is being played
+    private String result = null;
+    // colour whose turn it is, which an abandoned game is adjudicated from
+    private char colourToMove = 'D';
+    // whether the game ended because the connection was lost, rather than finishing or ending with a protocol error
+    private boolean connectionLost = false;
+    private boolean adjudicated = false;
+    // moves, passes and timings of the game, for its record in the game log
+    private GameRecord.Recorder recorder = null;
+    // where the moves are shown to spectators, or null if the game isn't broadcast
+    private SpectatorHub.Broadcast broadcast = null;
+
+    public Game(GameConnection connection, char currentColour, Engine player, PrintStream display) {
+        this.connection = connection;
+        this.currentColour = currentColour;
+        this.opponentsColour = Board.opponent(currentColour);
+        this.player = player;
+        this.display = display;
+        this.renderer = display != null ? new BoardRenderer(display) : null;
+    }
+
+    // drawing the board with the given renderer instead of printing all of it after every move
+    public void setRenderer(BoardRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    // showing the game's moves to spectators, where whoever plays the game publishes its result
+    public void setBroadcast(SpectatorHub.Broadcast broadcast) {
+        this.broadcast = broadcast;
+    }
+
+    public void run() {
+        play();
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    public char getColourToMove() {
+        return colourToMove;
+    }
+
+    public boolean isConnectionLost() {
+        return connectionLost;
+    }
+
+    // getting the record of the played game for the game log, naming the local player and the opponent
+    public GameRecord toRecord(String localName, String opponentName) {
+        String darkPlayer = currentColour == 'D' ? localName : opponentName;
+        String lightPlayer = currentColour == 'D' ? opponentName : localName;
+        return recorder.toRecord(darkPlayer, lightPlayer, GameRecord.resultOf(result, currentColour), adjudicated);
+    }
+
+    // deciding the result of a game the opponent abandoned from the board if the endgame solver can solve it quickly, returning the
+    // adjudicated result, or null if the game wasn't abandoned or has too many empty squares left, in which case it stays an error
+    public String adjudicate(EndgameSolver solver) {
+        if (!connectionLost || adjudicated) {
+            return adjudicated ? result : null;
+        }
+        String adjudicatedResult = solver.adjudicate(board, colourToMove, currentColour);
+        if (adjudicatedResult != null) {
+            result = adjudicatedResult;
+            adjudicated = true;
+            Metrics.GAMES_ADJUDICATED.increment();
+        }
+        return adjudicatedResult;
+    }
+
+    // playing the game until it finishes, returning the result
+    public String play() {
+        if (currentColour == 'D') {
+            print("\nGame Initialised, you are darks(D)");
+        }
+        else {
+            print("\nGame Initialised, you are lights(L)");
+        }
+        printBoard();
+        recorder = new GameRecord.Recorder();
+        // try catch block for when the connection is lost or the user exits the program, where the game ends with an error
+        try {
+            // darks go first, offering the binary form of the protocol along with the first move
+            if (currentColour == 'D') {
+                connection.offerBinary();
+                takeTurn(false);
+            }
+            // loop for Reversi game, that will stop once an error occurs (e.g. a player leaves, invalid move received by other player), or the game finishes
+            while (result == null) {
+                print("\nWaiting on opponent's move...\n");
+                int response = connection.receive();
+                if (response == GameConnection.CLOSED) {
+                    print("ERROR: Connection lost");
+                    Metrics.GAMES_CONNECTION_LOST.increment();
+                    connectionLost = true;
+                    result = "ERROR";
+                    break;
+                }
+                // checking if game is over and printing result
+                if (response == GameConnection.YOU_WIN || response == GameConnection.YOU_LOSE || response == GameConnection.DRAW) {
+                    result = GameConnection.toText(response);
+                    print(result);
+                    Metrics.GAMES_FINISHED.increment();
+                    break;
+                }
+                // checking if error occurs and aborting if it has
+                if (response == GameConnection.ERROR) {
+                    print("ERROR: Error occurred");
+                    Metrics.GAMES_OPPONENT_ERROR.increment();
+                    result = "ERROR";
+                    break;
+                }
+                if (response == GameConnection.PASS) {
+                    // checking if opponent passed without being out of moves, which is invalid
+                    if (board.legalMoves(opponentsColour) != 0) {
+                        print("Invalid pass made by opponent");
+                        Metrics.GAMES_ILLEGAL_MOVE.increment();
+                        sendError();
+                        break;
+                    }
+                    recorder.pass(opponentsColour);
+                    if (broadcast != null) {
+                        broadcast.pass(opponentsColour);
+                    }
+                }
+                else {
+                    // checking if moves requested by opponent is valid and if not return error to opponent and abort game
+                    if (!board.isLegalMove(opponentsColour, response)) {
+                        print("Invalid move made by opponent");
+                        Metrics.GAMES_ILLEGAL_MOVE.increment();
+                        sendError();
+                        break;
+                    }
+                    // adding tile based on opponent's move and flipping all of the player's tiles that it bounds
+                    board.makeMove(opponentsColour, response);
+                    recorder.move(opponentsColour, response);
+                    if (broadcast != null) {
+                        broadcast.move(opponentsColour, response);
+                    }
+                }
+                // the opponent has made a move or passed, meaning it is now the player's move
+                colourToMove = currentColour;
+                printBoard();
+                takeTurn(response == GameConnection.PASS);
+            }
+            // sending the result or error that ended the game, as messages are only written when waiting for the opponent
+            connection.flush();
+        } catch (IOException | NoSuchElementException e) {
+            print("ERROR: Error occurred");
+            connectionLost = e instanceof IOException;
+            if (connectionLost) {
+                Metrics.GAMES_CONNECTION_LOST.increment();
+            }
+            else {
+                Metrics.GAMES_LOCAL_QUIT.increment();
+            }
+            sendError();
+        }
+        return result;
+    }
+
+    // making the player's move, or passing if there are no possible moves
+    private void takeTurn(boolean opponentPassed) throws IOException {
+        if (board.legalMoves(currentColour) != 0) {
+            long start = System.nanoTime();
+            int move = player.selectMove(board, currentColour);
+            Metrics.LOCAL_MOVE_TIME.recordSince(start);
+            // adding tile based on player's move and flipping all of the opponent's tiles that it bounds
+            board.makeMove(currentColour, move);
+            recorder.move(currentColour, move);
+            if (broadcast != null) {
+                broadcast.move(currentColour, move);
+            }
+            colourToMove = opponentsColour;
+            print("\nMoved to " + Board.moveToString(move));
+            // sending move message to opponent
+            connection.send(move);
+            printBoard();
+        }
+        // checking if opponent passed becuase we have passed and if they have also passed, game is over
+        else if (opponentPassed) {
+            int currentTiles = board.countTiles(currentColour);
+            int opponentTiles = board.countTiles(opponentsColour);
+            // send result to opponent based on tile count, which is the opposite of the local result
+            int localResult = currentTiles > opponentTiles ? GameConnection.YOU_WIN : currentTiles < opponentTiles ? GameConnection.YOU_LOSE : GameConnection.DRAW;
+            connection.send(GameConnection.swapResult(localResult));
+            result = GameConnection.toText(localResult);
+            print(result);
+            Metrics.GAMES_FINISHED.increment();
+        }
+        else {
+            // player has passed and send pass message to opponent
+            print("No valid moves, you pass");
+            colourToMove = opponentsColour;
+            recorder.pass(currentColour);
+            if (broadcast != null) {
+                broadcast.pass(currentColour);
+            }
+            connection.send(GameConnection.PASS);
+        }
+    }
+
+    // ending the game with an error and telling the opponent, which may fail if the connection is already gone
+    private void sendError() {
+        result = "ERROR";
+        try {
+            connection.send(GameConnection.ERROR);
+            connection.flush();
+        } catch (IOException e) {
+            // the game is over either way
+        }
+    }
+
+    // printing the current status of the board, marking the legal moves when it is the player's turn
+    private void printBoard() {
+        if (renderer == null) {
+            return;
+        }
+        renderer.render(board, colourToMove == currentColour ? board.legalMoves(currentColour) : 0);
+    }
+
+    private void print(String message) {
+        if (display != null) {
+            display.println(message);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// one end of a game connection, sending and receiving the protocol messages as codes instead of strings
+// messages start in the text form (MOVE:r,c, PASS, YOU WIN, YOU LOSE, DRAW and ERROR lines), and switch to a binary form of one byte
+// per message if both ends support it, where a move is its square (0 to 63) and the other messages are the opcodes below
+// the player moving first offers the binary form with a BINARY? line before its first move, and a player that supports it replies
+// with a BINARY! line just before its own first message, switching both directions to bytes from then on
+// players that don't support it ignore the BINARY? line like any other unknown line, so the game carries on in text
+// messages are collected in a buffer and only written when the connection is about to wait for the opponent, so several
+// messages sent in a row go out in a single write
+public class GameConnection {
+    // opcodes of the binary form, which are also the codes returned by receive, where moves are the squares 0 to 63
+    public static final int PASS = 64;
+    public static final int YOU_WIN = 65;
+    public static final int YOU_LOSE = 66;
+    public static final int DRAW = 67;
+    public static final int ERROR = 68;
+    // a MOVE line that doesn't name a square, or a byte that isn't a message, which is handled like an illegal move
+    public static final int INVALID = 69;
+    // the opponent closed the connection
+    public static final int CLOSED = -1;
+
+    static final String BINARY_OFFER = "BINARY?";
+    static final String BINARY_ACCEPT = "BINARY!";
+    private static final int BUFFER_SIZE = 256;
+    // text lines are short, so a longer line can't be a protocol line and is skipped
+    private static final int MAX_LINE = 64;
+    private static final byte[] MOVE_PREFIX = bytes("MOVE:");
+    private static final byte[] PASS_LINE = bytes("PASS");
+    private static final byte[] YOU_WIN_LINE = bytes("YOU WIN");
+    private static final byte[] YOU_LOSE_LINE = bytes("YOU LOSE");
+    private static final byte[] DRAW_LINE = bytes("DRAW");
+    private static final byte[] ERROR_LINE = bytes("ERROR");
+    private static final byte[] OFFER_LINE = bytes(BINARY_OFFER);
+    private static final byte[] ACCEPT_LINE = bytes(BINARY_ACCEPT);
+    // codes only used when parsing text lines, for the negotiation lines and lines to skip
+    static final int OFFER = 70;
+    static final int ACCEPT = 71;
+    static final int UNKNOWN = 72;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final byte[] readBuffer = new byte[BUFFER_SIZE];
+    private int readPosition = 0;
+    private int readLimit = 0;
+    // whether the line being read is already too long to be a protocol line, so it is skipped up to its end
+    private boolean discarding = false;
+    private final byte[] writeBuffer = new byte[BUFFER_SIZE];
+    private int writeLength = 0;
+    // whether each direction has switched to the binary form
+    private boolean binaryInput = false;
+    private boolean binaryOutput = false;
+    // whether the opponent offered the binary form, which is accepted with the next message sent
+    private boolean offered = false;
+
+    public GameConnection(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    // offering the binary form, which only the player moving first does, before sending its first move
+    public void offerBinary() throws IOException {
+        writeLine(OFFER_LINE);
+    }
+
+    public boolean isBinary() {
+        return binaryInput && binaryOutput;
+    }
+
+    // adding a message to the output, which is written the next time the connection waits for a message or is flushed
+    public void send(int message) throws IOException {
+        if (offered && !binaryOutput) {
+            // accepting the offer, where everything the opponent sends after this is a reply to it and so is binary too
+            writeLine(ACCEPT_LINE);
+            binaryOutput = true;
+            binaryInput = true;
+        }
+        if (binaryOutput) {
+            if (writeLength == BUFFER_SIZE) {
+                flush();
+            }
+            writeBuffer[writeLength++] = (byte) message;
+        }
+        else {
+            if (writeLength + MAX_LINE > BUFFER_SIZE) {
+                flush();
+            }
+            writeLength = writeText(writeBuffer, writeLength, message);
+        }
+    }
+
+    // writing every message sent so far in one write
+    public void flush() throws IOException {
+        if (writeLength > 0) {
+            out.write(writeBuffer, 0, writeLength);
+            out.flush();
+            writeLength = 0;
+        }
+    }
+
+    // waiting for the opponent's next message, after writing everything sent so far, returning its code or CLOSED
+    // unknown text lines are skipped, the same as before the binary form existed
+    // the time from writing the messages to the reply is recorded as the opponent's round trip
+    public int receive() throws IOException {
+        long sent = writeLength > 0 ? System.nanoTime() : 0;
+        flush();
+        while (true) {
+            if (binaryInput) {
+                if (!fill()) {
+                    return CLOSED;
+                }
+                int message = readBuffer[readPosition++] & 0xff;
+                recordRoundTrip(sent);
+                return message <= ERROR ? message : INVALID;
+            }
+            int message = readLine();
+            if (message == OFFER) {
+                offered = true;
+            }
+            else if (message == ACCEPT) {
+                // the opponent accepted the offer, so everything it sends from here is binary and so is everything sent to it
+                binaryInput = true;
+                binaryOutput = true;
+            }
+            else if (message != UNKNOWN) {
+                if (message != CLOSED) {
+                    recordRoundTrip(sent);
+                }
+                return message;
+            }
+        }
+    }
+
+    private static void recordRoundTrip(long sent) {
+        if (sent != 0) {
+            Metrics.OPPONENT_ROUND_TRIP.recordSince(sent);
+        }
+    }
+
+    // reading the next text line and parsing it, returning CLOSED at the end of the stream
+    private int readLine() throws IOException {
+        int start = readPosition;
+        while (true) {
+            for (int i = start; i < readLimit; i++) {
+                if (readBuffer[i] == '\n') {
+                    int message = discarding ? UNKNOWN : parseLine(readBuffer, readPosition, i);
+                    discarding = false;
+                    readPosition = i + 1;
+                    return message;
+                }
+            }
+            // moving the partial line to the start of the buffer, dropping it and the rest of the line if it is already too long to be
+            // a protocol line
+            if (discarding || readLimit - readPosition >= MAX_LINE) {
+                discarding = true;
+                readPosition = readLimit;
+            }
+            start = readLimit - readPosition;
+            System.arraycopy(readBuffer, readPosition, readBuffer, 0, start);
+            readLimit = start;
+            readPosition = 0;
+            int count = in.read(readBuffer, readLimit, BUFFER_SIZE - readLimit);
+            if (count < 0) {
+                return CLOSED;
+            }
+            readLimit += count;
+        }
+    }
+
+    // making sure there is at least one byte to read, returning false at the end of the stream
+    private boolean fill() throws IOException {
+        if (readPosition < readLimit) {
+            return true;
+        }
+        int count = in.read(readBuffer, 0, BUFFER_SIZE);
+        if (count < 0) {
+            return false;
+        }
+        readPosition = 0;
+        readLimit = count;
+        return true;
+    }
+
+    private void writeLine(byte[] line) throws IOException {
+        if (writeLength + line.length + 1 > BUFFER_SIZE) {
+            flush();
+        }
+        System.arraycopy(line, 0, writeBuffer, writeLength, line.length);
+        writeLength += line.length;
+        writeBuffer[writeLength++] = '\n';
+    }
+
+    // parsing the text line between start and end (not including the line ending), ignoring spaces around it, into a message code
+    static int parseLine(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] <= ' ') {
+            start++;
+        }
+        while (end > start && bytes[end - 1] <= ' ') {
+            end--;
+        }
+        if (startsWith(bytes, start, end, MOVE_PREFIX)) {
+            // the square must be exactly <row_number>,<column_number>, the same as Board.parseMove
+            if (end - start != MOVE_PREFIX.length + 3 || bytes[start + 6] != ',') {
+                return INVALID;
+            }
+            int row = bytes[start + 5] - '1';
+            int column = bytes[start + 7] - '1';
+            if (row < 0 || row > 7 || column < 0 || column > 7) {
+                return INVALID;
+            }
+            return row * 8 + column;
+        }
+        int length = end - start;
+        if (length == PASS_LINE.length && startsWith(bytes, start, end, PASS_LINE)) {
+            return PASS;
+        }
+        if (length == YOU_WIN_LINE.length && startsWith(bytes, start, end, YOU_WIN_LINE)) {
+            return YOU_WIN;
+        }
+        if (length == YOU_LOSE_LINE.length && startsWith(bytes, start, end, YOU_LOSE_LINE)) {
+            return YOU_LOSE;
+        }
+        if (length == DRAW_LINE.length && startsWith(bytes, start, end, DRAW_LINE)) {
+            return DRAW;
+        }
+        if (length == ERROR_LINE.length && startsWith(bytes, start, end, ERROR_LINE)) {
+            return ERROR;
+        }
+        if (length == OFFER_LINE.length && startsWith(bytes, start, end, OFFER_LINE)) {
+            return OFFER;
+        }
+        if (length == ACCEPT_LINE.length && startsWith(bytes, start, end, ACCEPT_LINE)) {
+            return ACCEPT;
+        }
+        return UNKNOWN;
+    }
+
+    // writing a message as a text line at the given position of the buffer, returning the position after it
+    static int writeText(byte[] buffer, int position, int message) {
+        if (message < 64) {
+            System.arraycopy(MOVE_PREFIX, 0, buffer, position, MOVE_PREFIX.length);
+            position += MOVE_PREFIX.length;
+            buffer[position++] = (byte) ('1' + message / 8);
+            buffer[position++] = ',';
+            buffer[position++] = (byte) ('1' + message % 8);
+        }
+        else {
+            byte[] line = message == PASS ? PASS_LINE : message == YOU_WIN ? YOU_WIN_LINE : message == YOU_LOSE ? YOU_LOSE_LINE
+                : message == DRAW ? DRAW_LINE : ERROR_LINE;
+            System.arraycopy(line, 0, buffer, position, line.length);
+            position += line.length;
+        }
+        buffer[position++] = '\n';
+        return position;
+    }
+
+    // getting the text of a message without the line ending, for printing
+    public static String toText(int message) {
+        byte[] line = new byte[MAX_LINE];
+        return new String(line, 0, writeText(line, 0, message) - 1, StandardCharsets.US_ASCII);
+    }
+
+    // getting the result message from the other player's point of view
+    public static int swapResult(int message) {
+        return message == YOU_WIN ? YOU_LOSE : message == YOU_LOSE ? YOU_WIN : message;
+    }
+
+    private static boolean startsWith(byte[] bytes, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
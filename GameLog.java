@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// append-only log of game records, split into numbered segment files (games-000000.log, games-000001.log, ...) in one directory
+// games only put their record on a queue, and a background thread writes the queued records in batches, so finishing a game never
+// waits for the disk
+// the log is only forced to disk once a second (and when a segment fills up or the log is closed) instead of after every record,
+// so a crash loses at most the last second of games and never leaves a record half written in the middle of a segment
+// a new segment is started every time the log is opened, so records are never appended after a tail that a crash cut off
+public class GameLog {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    static final String SEGMENT_PREFIX = "games-";
+    static final String SEGMENT_SUFFIX = ".log";
+    // how often the log is forced to disk while records are being written, in milliseconds
+    private static final long SYNC_INTERVAL = 1000;
+    private static final int BATCH_BYTES = 64 * 1024;
+    // queued to tell the writer thread to finish
+    private static final GameRecord END = new GameRecord("", "", 0, 0, 0, new byte[0], 0, GameRecord.ERROR, false);
+
+    private final Path directory;
+    private final long segmentBytes;
+    // unbounded, so adding a record never blocks a game even if the disk falls behind
+    private final LinkedBlockingQueue<GameRecord> queue = new LinkedBlockingQueue<GameRecord>();
+    private final Thread writer;
+    private final ByteBuffer batch = ByteBuffer.allocate(BATCH_BYTES);
+    // records in the batch that haven't been written yet
+    private int batchRecords = 0;
+    private FileChannel segment;
+    private int segmentNumber;
+    private long segmentSize = 0;
+    private boolean unsynced = false;
+    private long nextSync = 0;
+    private volatile long written = 0;
+    private volatile long dropped = 0;
+
+    public GameLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    // opening the log in the given directory, creating it if needed, with segments of at most segmentBytes
+    public GameLog(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.max(segmentBytes, GameRecord.MAX_SIZE);
+        Files.createDirectories(directory);
+        ArrayList<Path> existing = segments(directory);
+        segmentNumber = existing.isEmpty() ? 0 : segmentNumber(existing.get(existing.size() - 1)) + 1;
+        openSegment();
+        writer = new Thread(this::writeRecords, "game-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // adding a record to the log, returning straight away
+    public void append(GameRecord record) {
+        queue.add(record);
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    // getting how many records couldn't be written because of a disk error
+    public long getDropped() {
+        return dropped;
+    }
+
+    // writing every record added so far and closing the log
+    public void close() {
+        queue.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // writer thread, which takes every queued record at once and writes them together
+    private void writeRecords() {
+        ArrayList<GameRecord> records = new ArrayList<GameRecord>();
+        boolean ending = false;
+        while (!ending) {
+            try {
+                long wait = unsynced ? Math.max(1, nextSync - System.currentTimeMillis()) : Long.MAX_VALUE;
+                GameRecord first = queue.poll(wait, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    records.add(first);
+                    queue.drainTo(records);
+                }
+            } catch (InterruptedException e) {
+                ending = true;
+            }
+            long writtenBefore = written;
+            try {
+                for (GameRecord record : records) {
+                    if (record == END) {
+                        ending = true;
+                        continue;
+                    }
+                    if (batch.remaining() < GameRecord.MAX_SIZE) {
+                        writeBatch();
+                    }
+                    // starting the next segment if this record could take the segment past its size
+                    if (segmentSize + batch.position() + GameRecord.MAX_SIZE > segmentBytes) {
+                        writeBatch();
+                        segment.force(false);
+                        segment.close();
+                        segmentNumber++;
+                        openSegment();
+                    }
+                    record.encode(batch);
+                    batchRecords++;
+                }
+                writeBatch();
+                if (unsynced && (ending || System.currentTimeMillis() >= nextSync)) {
+                    segment.force(false);
+                    unsynced = false;
+                }
+            } catch (IOException e) {
+                System.err.println("ERROR: Unable to write game log in " + directory + ": " + e.getMessage());
+                // the records of this batch that weren't written are lost, and the next batch tries the disk again
+                dropped += records.size() - (records.contains(END) ? 1 : 0) - (written - writtenBefore);
+                batch.clear();
+                batchRecords = 0;
+            }
+            records.clear();
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            // everything has been written and forced already
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        if (batch.position() == 0) {
+            return;
+        }
+        batch.flip();
+        while (batch.hasRemaining()) {
+            segmentSize += segment.write(batch);
+        }
+        batch.clear();
+        written += batchRecords;
+        batchRecords = 0;
+        if (!unsynced) {
+            unsynced = true;
+            nextSync = System.currentTimeMillis() + SYNC_INTERVAL;
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segment = FileChannel.open(directory.resolve(segmentName(segmentNumber)), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentSize = 0;
+    }
+
+    static String segmentName(int number) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // getting the segment files in the directory, oldest first
+    static ArrayList<Path> segments(Path directory) throws IOException {
+        ArrayList<Path> segments = new ArrayList<Path>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "[0-9]*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+        return segments;
+    }
+}
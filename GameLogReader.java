@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+
+// reads the records of a game log back in the order they were written, one segment at a time through a small buffer,
+// so a log of millions of games can be streamed without loading it
+// a segment that ends part way through a record (from a crash while it was being written) is read up to that record
+// each record has a reference made of its segment number and offset, which the record can be read back by later
+public class GameLogReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String USAGE = "Usage: java GameLogReader <log directory> [--print]";
+
+    private final ArrayList<Path> segments;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private int nextSegment = 0;
+    private FileChannel segment = null;
+    private Path segmentPath = null;
+    private int segmentNumber = -1;
+    // offset in the segment of the byte at the buffer's position
+    private long offset = 0;
+    // where the first segment is read from, which is the start of the log unless reading carries on from a reference
+    private long startOffset = 0;
+    private long recordReference = -1;
+    private int truncatedSegments = 0;
+
+    public GameLogReader(Path directory) throws IOException {
+        this(directory, 0, 0);
+    }
+
+    // reading the records from the given segment number and offset onwards, skipping older segments
+    public GameLogReader(Path directory, int firstSegment, long firstOffset) throws IOException {
+        segments = GameLog.segments(directory);
+        while (nextSegment < segments.size() && GameLog.segmentNumber(segments.get(nextSegment)) < firstSegment) {
+            nextSegment++;
+        }
+        if (nextSegment < segments.size() && GameLog.segmentNumber(segments.get(nextSegment)) == firstSegment) {
+            startOffset = firstOffset;
+        }
+        buffer.flip();
+    }
+
+    // getting the next record, or null once every segment has been read
+    // throws an IOException if a record is corrupt
+    public GameRecord next() throws IOException {
+        while (true) {
+            if (segment == null) {
+                if (nextSegment == segments.size()) {
+                    return null;
+                }
+                segmentPath = segments.get(nextSegment++);
+                segmentNumber = GameLog.segmentNumber(segmentPath);
+                segment = FileChannel.open(segmentPath);
+                segment.position(startOffset);
+                offset = startOffset;
+                startOffset = 0;
+                buffer.clear();
+                buffer.flip();
+            }
+            GameRecord record;
+            int position = buffer.position();
+            try {
+                record = GameRecord.decode(buffer);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt record in " + segmentPath + " at " + offset + ": " + e.getMessage());
+            }
+            if (record != null) {
+                recordReference = reference(segmentNumber, offset);
+                offset += buffer.position() - position;
+                return record;
+            }
+            // the buffer ends part way through a record, so more of the segment is read after what is left of the buffer
+            buffer.compact();
+            int count = segment.read(buffer);
+            buffer.flip();
+            if (count < 0) {
+                if (buffer.hasRemaining()) {
+                    truncatedSegments++;
+                }
+                segment.close();
+                segment = null;
+            }
+        }
+    }
+
+    // getting the reference of the record last returned by next
+    public long getReference() {
+        return recordReference;
+    }
+
+    // getting the segment number and offset to carry on reading from after the record last returned by next
+    public int getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    // making the reference of the record at the given offset of a segment
+    public static long reference(int segmentNumber, long offset) {
+        return ((long) segmentNumber << 32) | offset;
+    }
+
+    // reading the single record with the given reference
+    public static GameRecord read(Path directory, long reference) throws IOException {
+        Path file = directory.resolve(GameLog.segmentName((int) (reference >>> 32)));
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer record = ByteBuffer.allocate(GameRecord.MAX_SIZE);
+            channel.read(record, reference & 0xffffffffL);
+            record.flip();
+            GameRecord decoded = GameRecord.decode(record);
+            if (decoded == null) {
+                throw new IOException("No record at " + (reference & 0xffffffffL) + " in " + file);
+            }
+            return decoded;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt record at " + (reference & 0xffffffffL) + " in " + file + ": " + e.getMessage());
+        }
+    }
+
+    // getting how many segments ended part way through a record
+    public int getTruncatedSegments() {
+        return truncatedSegments;
+    }
+
+    public void close() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+    }
+
+    // main method, replaying every game in the log on the board to check it, printing each game with --print
+    public static void main(String[] args) {
+        Options options = null;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        if (options.positionalCount() != 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        boolean print = options.has("print");
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        long games = 0;
+        long[] results = new long[4];
+        long invalid = 0;
+        try (GameLogReader reader = new GameLogReader(Paths.get(options.positional(0)))) {
+            GameRecord record;
+            while ((record = reader.next()) != null) {
+                games++;
+                results[record.getResult()]++;
+                String problem = null;
+                Board board = null;
+                try {
+                    board = record.replay();
+                } catch (IllegalStateException e) {
+                    problem = e.getMessage();
+                    invalid++;
+                }
+                if (print || problem != null) {
+                    String line = dateFormat.format(new Date(record.getStartTime())) + " " + record.getDarkPlayer() + " (D) vs "
+                        + record.getLightPlayer() + " (L): " + GameRecord.resultName(record.getResult())
+                        + (record.isAdjudicated() ? " (adjudicated)" : "") + ", " + record.getMoveCount()
+                        + " moves, " + record.getPasses() + " passes, " + record.getDarkMillis() + "ms / " + record.getLightMillis() + "ms";
+                    if (board != null) {
+                        line += ", " + board.countTiles('D') + "-" + board.countTiles('L');
+                    }
+                    System.out.println(problem == null ? line : line + " INVALID: " + problem);
+                }
+            }
+            System.out.println("replayed " + games + " games: " + results[GameRecord.DARK_WIN] + " darks wins, " + results[GameRecord.LIGHT_WIN]
+                + " lights wins, " + results[GameRecord.DRAW] + " draws, " + results[GameRecord.ERROR] + " errors, " + invalid + " invalid");
+            if (reader.getTruncatedSegments() > 0) {
+                System.out.println(reader.getTruncatedSegments() + " segments end with a record that was cut off");
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to read game log");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        if (invalid > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+// record of one finished game, kept in the game log for audits and disputes
+// a record holds the players, the squares played in order, the number of passes, the result and how long each side took
+// in the log a record is written as a 2 byte length, the body, and a CRC32 of the body, where the body is:
+//   result (1 byte, plus 4 if the result was adjudicated), start time (8 bytes, milliseconds since 1970),
+//   time taken by darks and by lights (4 bytes each, milliseconds), dark and light player names (1 byte length then UTF-8 each),
+//   move count and pass count (1 byte each), then the moves at 6 bits each
+// passes aren't stored in the move sequence, as a pass is only ever played by a player with no legal moves, so replaying the moves
+// finds them again
+public class GameRecord {
+    // result from darks' point of view
+    public static final int DARK_WIN = 0;
+    public static final int LIGHT_WIN = 1;
+    public static final int DRAW = 2;
+    public static final int ERROR = 3;
+    private static final int ADJUDICATED = 4;
+    // longest encoded record, with two 255 byte names and 60 moves
+    public static final int MAX_SIZE = 2 + 1 + 8 + 4 + 4 + 1 + 255 + 1 + 255 + 2 + 45 + 4;
+    private static final int MAX_NAME = 255;
+
+    private final String darkPlayer;
+    private final String lightPlayer;
+    private final long startTime;
+    private final int darkMillis;
+    private final int lightMillis;
+    private final byte[] moves;
+    private final int passes;
+    private final int result;
+    // whether the game was abandoned and the result decided by the endgame solver
+    private final boolean adjudicated;
+
+    public GameRecord(String darkPlayer, String lightPlayer, long startTime, int darkMillis, int lightMillis, byte[] moves, int passes, int result,
+            boolean adjudicated) {
+        this.darkPlayer = darkPlayer;
+        this.lightPlayer = lightPlayer;
+        this.startTime = startTime;
+        this.darkMillis = darkMillis;
+        this.lightMillis = lightMillis;
+        this.moves = moves;
+        this.passes = passes;
+        this.result = result;
+        this.adjudicated = adjudicated;
+    }
+
+    public String getDarkPlayer() {
+        return darkPlayer;
+    }
+
+    public String getLightPlayer() {
+        return lightPlayer;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public int getDarkMillis() {
+        return darkMillis;
+    }
+
+    public int getLightMillis() {
+        return lightMillis;
+    }
+
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    public int getPasses() {
+        return passes;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    public boolean isAdjudicated() {
+        return adjudicated;
+    }
+
+    // getting the record's result from a player's point of view as a result message (YOU WIN, YOU LOSE, DRAW or ERROR)
+    public String getResult(char colour) {
+        if (result == ERROR) {
+            return "ERROR";
+        }
+        if (result == DRAW) {
+            return "DRAW";
+        }
+        return (result == DARK_WIN) == (colour == 'D') ? "YOU WIN" : "YOU LOSE";
+    }
+
+    // getting the record result for a result message from the given colour's point of view
+    public static int resultOf(String message, char colour) {
+        if (message == null || message.equals("ERROR")) {
+            return ERROR;
+        }
+        if (message.equals("DRAW")) {
+            return DRAW;
+        }
+        return message.equals("YOU WIN") == (colour == 'D') ? DARK_WIN : LIGHT_WIN;
+    }
+
+    public static String resultName(int result) {
+        return result == DARK_WIN ? "darks win" : result == LIGHT_WIN ? "lights win" : result == DRAW ? "draw" : "error";
+    }
+
+    // writing the record at the buffer's position, which must have MAX_SIZE bytes remaining
+    public void encode(ByteBuffer buffer) {
+        int start = buffer.position();
+        // length is filled in once the body is written
+        buffer.putShort((short) 0);
+        buffer.put((byte) (adjudicated ? result | ADJUDICATED : result));
+        buffer.putLong(startTime);
+        buffer.putInt(darkMillis);
+        buffer.putInt(lightMillis);
+        putName(buffer, darkPlayer);
+        putName(buffer, lightPlayer);
+        buffer.put((byte) moves.length);
+        buffer.put((byte) passes);
+        // packing the moves 6 bits at a time, from the high bits of each byte
+        int bits = 0;
+        int bitCount = 0;
+        for (byte move : moves) {
+            bits = (bits << 6) | move;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                buffer.put((byte) (bits >>> bitCount));
+            }
+        }
+        if (bitCount > 0) {
+            buffer.put((byte) (bits << (8 - bitCount)));
+        }
+        int length = buffer.position() - start - 2;
+        buffer.putShort(start, (short) length);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + start + 2, length);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    // reading the record at the buffer's position, throwing an IllegalArgumentException if it is corrupt
+    // returns null if the buffer ends part way through the record, which happens at the end of a log that was cut off
+    public static GameRecord decode(ByteBuffer buffer) {
+        if (buffer.remaining() < 2) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getShort(start) & 0xffff;
+        if (buffer.remaining() < 2 + length + 4) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + start + 2, length);
+        if (buffer.getInt(start + 2 + length) != (int) crc.getValue()) {
+            throw new IllegalArgumentException("Record checksum doesn't match");
+        }
+        ByteBuffer body = ByteBuffer.wrap(buffer.array(), buffer.arrayOffset() + start + 2, length);
+        try {
+            int flags = body.get();
+            int result = flags & ~ADJUDICATED;
+            long startTime = body.getLong();
+            int darkMillis = body.getInt();
+            int lightMillis = body.getInt();
+            String darkPlayer = getName(body);
+            String lightPlayer = getName(body);
+            byte[] moves = new byte[body.get() & 0xff];
+            int passes = body.get() & 0xff;
+            int bits = 0;
+            int bitCount = 0;
+            for (int i = 0; i < moves.length; i++) {
+                if (bitCount < 6) {
+                    bits = (bits << 8) | (body.get() & 0xff);
+                    bitCount += 8;
+                }
+                bitCount -= 6;
+                moves[i] = (byte) ((bits >>> bitCount) & 63);
+            }
+            if (result < DARK_WIN || result > ERROR) {
+                throw new IllegalArgumentException("Invalid result " + result);
+            }
+            buffer.position(start + 2 + length + 4);
+            return new GameRecord(darkPlayer, lightPlayer, startTime, darkMillis, lightMillis, moves, passes, result, (flags & ADJUDICATED) != 0);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Record is shorter than its contents");
+        }
+    }
+
+    // replaying the moves on a new board, returning the final board
+    // throws an IllegalStateException if a move is illegal or the passes don't match the record, which means the record is wrong
+    public Board replay() {
+        Board board = new Board();
+        char colour = 'D';
+        int forcedPasses = 0;
+        for (int i = 0; i < moves.length; i++) {
+            if (board.legalMoves(colour) == 0) {
+                if (board.legalMoves(Board.opponent(colour)) == 0) {
+                    throw new IllegalStateException("Move " + (i + 1) + " was played after the game ended");
+                }
+                forcedPasses++;
+                colour = Board.opponent(colour);
+            }
+            if (!board.isLegalMove(colour, moves[i])) {
+                throw new IllegalStateException("Move " + (i + 1) + " (" + Board.moveToString(moves[i]) + ") is illegal for " + colour);
+            }
+            board.makeMove(colour, moves[i]);
+            colour = Board.opponent(colour);
+        }
+        // an abandoned game ended part way through, so only a game that was played out can be checked against its result
+        if (result != ERROR && !adjudicated) {
+            // a finished game ends with one pass, from the first player without a move, before the other player sends the result
+            if (board.legalMoves('D') != 0 || board.legalMoves('L') != 0) {
+                throw new IllegalStateException("Game was recorded as finished but moves are left");
+            }
+            if (passes != forcedPasses + 1) {
+                throw new IllegalStateException("Recorded " + passes + " passes but the moves need " + (forcedPasses + 1));
+            }
+            int difference = board.countTiles('D') - board.countTiles('L');
+            int expected = difference > 0 ? DARK_WIN : difference < 0 ? LIGHT_WIN : DRAW;
+            if (result != expected) {
+                throw new IllegalStateException("Recorded " + resultName(result) + " but the board is " + resultName(expected));
+            }
+        }
+        return board;
+    }
+
+    private static void putName(ByteBuffer buffer, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_NAME);
+        buffer.put((byte) length);
+        buffer.put(bytes, 0, length);
+    }
+
+    private static String getName(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.get() & 0xff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // collecting a game's moves, passes and timings while it is played, for the record made once it ends
+    public static class Recorder {
+        private final long startTime = System.currentTimeMillis();
+        private final byte[] moves = new byte[60];
+        private int moveCount = 0;
+        private int passes = 0;
+        private long darkNanos = 0;
+        private long lightNanos = 0;
+        private long turnStart = System.nanoTime();
+
+        // recording a move, charging the time since the last move or pass to the player that moved
+        public void move(char colour, int square) {
+            endTurn(colour);
+            // a game can't have more than 60 moves, so a longer game is a bug and the extra moves are left out of the record
+            if (moveCount < moves.length) {
+                moves[moveCount++] = (byte) square;
+            }
+        }
+
+        public void pass(char colour) {
+            endTurn(colour);
+            passes++;
+        }
+
+        // leaving a taken back move or pass out of the record, where the time spent on it stays with the player that made it
+        public void undo(boolean pass) {
+            if (pass) {
+                passes--;
+            }
+            else if (moveCount > 0) {
+                moveCount--;
+            }
+        }
+
+        private void endTurn(char colour) {
+            long now = System.nanoTime();
+            if (colour == 'D') {
+                darkNanos += now - turnStart;
+            }
+            else {
+                lightNanos += now - turnStart;
+            }
+            turnStart = now;
+        }
+
+        public GameRecord toRecord(String darkPlayer, String lightPlayer, int result, boolean adjudicated) {
+            byte[] played = new byte[moveCount];
+            System.arraycopy(moves, 0, played, 0, moveCount);
+            return new GameRecord(darkPlayer, lightPlayer, startTime, (int) (darkNanos / 1000000), (int) (lightNanos / 1000000), played, passes, result,
+                adjudicated);
+        }
+    }
+}
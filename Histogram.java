@@ -0,0 +1,117 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// latency histogram with log-linear buckets, like an HDR histogram: values are split into powers of two, and each power of two
+// into 32 equal buckets, so any value is counted to within about 3% with a fixed 1408 buckets from 1ns to about 3 days
+// recording is a few atomic adds and never allocates or locks, so it can be called on every move from many threads
+public class Histogram {
+    // 2^SUB_BUCKET_BITS buckets for each power of two
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values up to 2^MAX_BITS nanoseconds (about 78 hours), where larger values count in the last bucket
+    private static final int MAX_BITS = 48;
+    private static final int BUCKETS = (MAX_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // recording a value in nanoseconds, where negative values count as 0
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // recording the time since the given System.nanoTime
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    // getting the bucket of a value, where values below 32 have a bucket each and larger values share a bucket with the values
+    // that have the same highest 6 bits
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_BITS) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    // getting the highest value counted in a bucket
+    static long bucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : sum.sum() / total;
+    }
+
+    // getting the value that the given fraction of recorded values are at or below, to within the bucket size, or 0 if nothing is recorded
+    public long getPercentile(double fraction) {
+        return getPercentiles(fraction)[0];
+    }
+
+    // getting several percentiles from one copy of the buckets, so they agree with each other while values are being recorded
+    public long[] getPercentiles(double... fractions) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long[] values = new long[fractions.length];
+        for (int i = 0; i < fractions.length; i++) {
+            values[i] = percentile(snapshot, total, fractions[i]);
+        }
+        return values;
+    }
+
+    private long percentile(long[] snapshot, long total, double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // the bucket's limit can be above the largest value recorded, which is known exactly
+                return Math.min(bucketLimit(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    // clearing every count, which races with values being recorded at the same time, so it is only for between runs
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// load generator for soak testing the networking code, running many bot clients in one process that each play a number of games
+// every bot finds its opponents the same way Reversi does, with UDP NEW GAME offers (or a lobby's JOIN) and a TCP connection, and then
+// plays random legal moves with the MOVE/PASS messages, so the whole client networking path is driven without a terminal
+// each bot has its own loopback address (127.1.x.y), so they can all bind the same UDP port and the whole gameplay port range, and
+// without a lobby bots are paired up and send their offers straight to each other, as broadcasts don't reach other loopback addresses
+public class LoadGenerator {
+    private static final String USAGE = "Usage: java LoadGenerator <bots> <games per bot> [--port <UDP port>] [--rate <games per second>] [--lobby <address>] [--timeout <milliseconds>]";
+    private static final int DEFAULT_PORT = 9300;
+    // how long a bot waits for its opponent's next message before the game counts as a lost connection, in milliseconds
+    private static final int DEFAULT_TIMEOUT = 10000;
+    // how often progress is printed, in milliseconds
+    private static final long PROGRESS_INTERVAL = 5000;
+    // how many times a bot tries to find an opponent for a game before giving up
+    private static final int MATCHMAKING_ATTEMPTS = 10;
+
+    private final int bots;
+    private final int gamesPerBot;
+    private final int port;
+    private final InetAddress lobbyAddress;
+    private final int timeout;
+    // time between the starts of matchmaking of any two bots, or 0 to start every game as soon as the last one ends
+    private final long startInterval;
+    // System.nanoTime of the next matchmaking start, when starts are paced
+    private final AtomicLong nextStart = new AtomicLong();
+
+    // games are counted by the bot playing darks, so each game is counted once
+    private final LongAdder games = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder errorGames = new LongAdder();
+    private final LongAdder matchmakingFailures = new LongAdder();
+    // time from a game's connection being made to its end, seen by the darks bot
+    private final Histogram gameTime = new Histogram();
+    private volatile long startTime;
+
+    public LoadGenerator(int bots, int gamesPerBot, int port, InetAddress lobbyAddress, double rate, int timeout) {
+        this.bots = bots;
+        this.gamesPerBot = gamesPerBot;
+        this.port = port;
+        this.lobbyAddress = lobbyAddress;
+        this.timeout = timeout;
+        // both bots of a game take a start, so there are twice as many starts as games
+        startInterval = rate > 0 ? (long) (1e9 / (2 * rate)) : 0;
+    }
+
+    // getting the loopback address of a bot, from 127.1.0.1 upwards
+    static InetAddress botAddress(int bot) throws UnknownHostException {
+        int number = bot + 1;
+        return InetAddress.getByAddress(new byte[] {127, 1, (byte) (number >> 8), (byte) number});
+    }
+
+    // running every bot on its own thread until they have all played their games, printing progress along the way
+    public void run() throws InterruptedException {
+        startTime = System.nanoTime();
+        nextStart.set(startTime);
+        Thread[] threads = new Thread[bots];
+        for (int i = 0; i < bots; i++) {
+            int bot = i;
+            threads[i] = new Thread(() -> playGames(bot), "bot-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                thread.join(PROGRESS_INTERVAL);
+                if (thread.isAlive()) {
+                    System.out.println(progress());
+                }
+            }
+        }
+    }
+
+    // playing a bot's games one after another, finding a new opponent for each
+    private void playGames(int bot) {
+        PortAllocator ports = null;
+        try {
+            InetAddress address = botAddress(bot);
+            // without a lobby, bots 0 and 1 play each other, as do 2 and 3, and so on
+            InetAddress offerAddress = lobbyAddress != null ? lobbyAddress : botAddress(bot ^ 1);
+            ports = new PortAllocator(address);
+            RandomEngine engine = new RandomEngine();
+            for (int game = 0; game < gamesPerBot; game++) {
+                waitForStart();
+                if (!findAndPlay(ports, offerAddress, engine)) {
+                    System.err.println("ERROR: Bot " + bot + " at " + address.getHostAddress() + " gave up finding an opponent");
+                    break;
+                }
+            }
+        } catch (UnknownHostException e) {
+            // every bot address is a literal, so it can't be looked up
+            throw new AssertionError(e);
+        } finally {
+            try {
+                if (ports != null) {
+                    ports.close();
+                }
+            } catch (IOException e) {
+                // the bot is finished either way
+            }
+        }
+    }
+
+    // waiting until the next start is due when starts are paced, taking the start after it for the next bot
+    private void waitForStart() {
+        if (startInterval == 0) {
+            return;
+        }
+        long start = nextStart.getAndAdd(startInterval);
+        long wait = start - System.nanoTime();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // finding an opponent with a new matchmaker and playing it, trying again if matchmaking fails, returning false if it keeps failing
+    private boolean findAndPlay(PortAllocator ports, InetAddress offerAddress, RandomEngine engine) {
+        for (int attempt = 0; attempt < MATCHMAKING_ATTEMPTS; attempt++) {
+            Matchmaker matchmaker;
+            Socket socket;
+            try {
+                matchmaker = lobbyAddress != null ? new Matchmaker(ports, port, offerAddress, Lobby.DEFAULT_RATING)
+                    : new Matchmaker(ports, port, offerAddress);
+                matchmaker.setDisplay(null);
+                socket = matchmaker.pair();
+            } catch (IOException e) {
+                matchmakingFailures.increment();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                continue;
+            }
+            playGame(socket, matchmaker.getColour(), engine);
+            return true;
+        }
+        return false;
+    }
+
+    // playing one game with random moves on a connection the matchmaker made, where the colour is whoever connected
+    private void playGame(Socket socket, char colour, RandomEngine engine) {
+        long start = System.nanoTime();
+        try {
+            socket.setSoTimeout(timeout);
+            GameConnection connection = new GameConnection(socket.getInputStream(), socket.getOutputStream());
+            Game game = new Game(connection, colour, engine, null);
+            String result = game.play();
+            if (colour == 'D') {
+                gameTime.recordSince(start);
+                games.increment();
+                moves.add(game.toRecord("", "").getMoveCount());
+                if (result.equals("ERROR")) {
+                    errorGames.increment();
+                }
+            }
+        } catch (IOException e) {
+            if (colour == 'D') {
+                games.increment();
+                errorGames.increment();
+            }
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the game is over either way
+            }
+        }
+    }
+
+    // getting a line of progress so far
+    private String progress() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return String.format("%.1fs: %d games (%.1f games/s, %.1f moves/s), %d games ended in an error, %d matchmaking failures",
+            seconds, games.sum(), games.sum() / seconds, moves.sum() / seconds, errorGames.sum(), matchmakingFailures.sum());
+    }
+
+    // printing the throughput, errors and latency of the run, along with every counter and histogram of the games played
+    public void report() {
+        System.out.println("played " + games.sum() + " of " + (long) bots * gamesPerBot / 2 + " games with " + bots + " bots");
+        System.out.println(progress());
+        long[] percentiles = gameTime.getPercentiles(0.5, 0.9, 0.99);
+        System.out.println(String.format("game time p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms", percentiles[0] / 1e6, percentiles[1] / 1e6,
+            percentiles[2] / 1e6, gameTime.getMax() / 1e6));
+        System.out.print(Metrics.snapshot(false));
+    }
+
+    // main method
+    public static void main(String[] args) {
+        Options options = null;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        if (options.positionalCount() != 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        try {
+            int bots = Integer.parseInt(options.positional(0));
+            int gamesPerBot = Integer.parseInt(options.positional(1));
+            if (bots <= 0 || gamesPerBot <= 0) {
+                throw new NumberFormatException();
+            }
+            InetAddress lobbyAddress = options.has("lobby") ? InetAddress.getByName(options.get("lobby", "")) : null;
+            // bots play in fixed pairs without a lobby, so there must be an even number of them
+            if (lobbyAddress == null && bots % 2 != 0) {
+                System.err.println(USAGE);
+                System.err.println("ERROR: There must be an even number of bots without a lobby");
+                System.exit(1);
+            }
+            double rate = options.has("rate") ? Double.parseDouble(options.get("rate", "")) : 0;
+            if (rate < 0) {
+                throw new NumberFormatException();
+            }
+            LoadGenerator generator = new LoadGenerator(bots, gamesPerBot, options.getInt("port", DEFAULT_PORT), lobbyAddress, rate,
+                options.getInt("timeout", DEFAULT_TIMEOUT));
+            // reporting what was played so far if the run is stopped with Ctrl+C, as a soak test may never finish on its own
+            Thread reporter = new Thread(generator::report);
+            Runtime.getRuntime().addShutdownHook(reporter);
+            generator.run();
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: Didn't find positive integers for bots, games per bot, --port and --timeout, or a number for --rate");
+            System.exit(1);
+        } catch (UnknownHostException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: No IP address for the host could be found based on --lobby");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            // the shutdown hook reports the run
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+// lobby that pairs Reversi clients over unicast UDP, instead of every client broadcasting NEW GAME messages to the network
+// a client sends JOIN:<gameplay port>[:<rating>] to the lobby, and the lobby either queues it and replies WAIT, or pairs it with
+// the player that has waited longest in its rating bucket (or a neighbouring one) and replies PAIR:<address>:<gameplay port>
+// the client told to PAIR connects to that player's gameplay port and plays lights, and the waiting player accepts and plays darks
+// waiting clients send JOIN again every few seconds, and players who stop sending it are dropped from the queue
+public class Lobby {
+    public static final int DEFAULT_RATING = 1500;
+    // clients waiting longer than this without sending JOIN again have gone, in milliseconds
+    static final long JOIN_TIMEOUT = 15000;
+    // width of each rating bucket, where players are only paired with players in the same or a neighbouring bucket
+    private static final int BUCKET_WIDTH = 200;
+    private static final int BUCKETS = 16;
+    private static final int MESSAGE_SIZE = 64;
+
+    // a client waiting in the queue, with where it accepts its opponent's connection
+    private static class Player {
+        final InetSocketAddress source;
+        final InetSocketAddress gameplay;
+        final int bucket;
+        long lastJoin;
+        // set once the player is paired or replaced, so its stale place in the queue is skipped
+        boolean removed = false;
+
+        Player(InetSocketAddress source, InetSocketAddress gameplay, int bucket, long lastJoin) {
+            this.source = source;
+            this.gameplay = gameplay;
+            this.bucket = bucket;
+            this.lastJoin = lastJoin;
+        }
+    }
+
+    private final DatagramChannel channel;
+    // waiting players in the order they joined, one queue per rating bucket
+    private final ArrayDeque<Player>[] queues;
+    // waiting players by the address they send from, so a repeated JOIN only refreshes the player's place
+    private final HashMap<InetSocketAddress, Player> waiting = new HashMap<InetSocketAddress, Player>();
+    private final ByteBuffer received = ByteBuffer.allocate(MESSAGE_SIZE);
+    private long pairings = 0;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Lobby(InetAddress address, int port) throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(address, port));
+        queues = new ArrayDeque[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            queues[i] = new ArrayDeque<Player>();
+        }
+    }
+
+    // running the lobby until the process is stopped
+    public void run() throws IOException {
+        System.out.println("lobby listening for UDP messages on port " + ((InetSocketAddress) channel.getLocalAddress()).getPort());
+        while (true) {
+            received.clear();
+            InetSocketAddress source = (InetSocketAddress) channel.receive(received);
+            String reply = handle(source, new String(received.array(), 0, received.position(), StandardCharsets.UTF_8).trim(), System.currentTimeMillis());
+            if (reply != null) {
+                channel.send(ByteBuffer.wrap((reply + "\n").getBytes(StandardCharsets.UTF_8)), source);
+            }
+        }
+    }
+
+    // handling a message from a client, returning the reply or null if the message isn't a valid JOIN
+    String handle(InetSocketAddress source, String message, long now) {
+        if (!message.startsWith("JOIN:")) {
+            return null;
+        }
+        int gameplayPort;
+        int rating = DEFAULT_RATING;
+        try {
+            String[] fields = message.substring(5).split(":");
+            if (fields.length > 2) {
+                return null;
+            }
+            gameplayPort = Integer.parseInt(fields[0]);
+            if (fields.length == 2) {
+                rating = Integer.parseInt(fields[1]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (gameplayPort < PortAllocator.MIN_GAMEPLAY_PORT || gameplayPort > PortAllocator.MAX_GAMEPLAY_PORT) {
+            return null;
+        }
+        int bucket = Math.max(0, Math.min(BUCKETS - 1, rating / BUCKET_WIDTH));
+        Player existing = waiting.get(source);
+        if (existing != null) {
+            if (existing.bucket == bucket && existing.gameplay.getPort() == gameplayPort) {
+                // the player is still waiting, which keeps its place in the queue
+                existing.lastJoin = now;
+                return "WAIT";
+            }
+            // the player rejoined with a different port or rating, so it joins again from the back
+            existing.removed = true;
+            waiting.remove(source);
+        }
+        // pairing with the longest waiting player in the same bucket, then the one below, then the one above
+        Player opponent = nextWaiting(bucket, now);
+        if (opponent == null && bucket > 0) {
+            opponent = nextWaiting(bucket - 1, now);
+        }
+        if (opponent == null && bucket < BUCKETS - 1) {
+            opponent = nextWaiting(bucket + 1, now);
+        }
+        if (opponent == null) {
+            Player player = new Player(source, new InetSocketAddress(source.getAddress(), gameplayPort), bucket, now);
+            queues[bucket].addLast(player);
+            waiting.put(source, player);
+            return "WAIT";
+        }
+        opponent.removed = true;
+        waiting.remove(opponent.source);
+        pairings++;
+        return "PAIR:" + opponent.gameplay.getAddress().getHostAddress() + ":" + opponent.gameplay.getPort();
+    }
+
+    // taking the longest waiting player out of a bucket's queue, skipping players that were removed or stopped sending JOIN
+    private Player nextWaiting(int bucket, long now) {
+        ArrayDeque<Player> queue = queues[bucket];
+        while (!queue.isEmpty()) {
+            Player player = queue.pollFirst();
+            if (player.removed) {
+                continue;
+            }
+            if (now - player.lastJoin > JOIN_TIMEOUT) {
+                waiting.remove(player.source);
+                continue;
+            }
+            return player;
+        }
+        return null;
+    }
+
+    public long getPairings() {
+        return pairings;
+    }
+
+    // main method
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java Lobby <address> <port>");
+            System.exit(1);
+        }
+        try {
+            int port = Integer.parseInt(args[1]);
+            if (port <= 0) {
+                throw new NumberFormatException();
+            }
+            new Lobby(InetAddress.getByName(args[0]), port).run();
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: java Lobby <address> <port>");
+            System.err.println("ERROR: Didn't find positive integer for port command-line argument");
+            System.exit(1);
+        } catch (UnknownHostException e) {
+            System.err.println("ERROR: No IP address for the host could be found based on address command-line argument");
+            System.exit(1);
+        } catch (SocketException e) {
+            System.err.println("ERROR: Socket unable to bind to " + args[0] + " at port " + args[1]);
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to receive or send packet");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
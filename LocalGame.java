@@ -0,0 +1,129 @@
+import java.io.PrintStream;
+
+// one game of Reversi played in this process between two engines, without any connection
+// either engine can be the user at the terminal or a computer player, and a user can take back their moves
+// moves are made on the board's undo stack, so taking one back restores the board in constant time instead of replaying the game
+public class LocalGame {
+    private final Engine darkPlayer;
+    private final Engine lightPlayer;
+    // where the board and game messages are printed, or null to play without printing anything
+    private final PrintStream display;
+    // draws the board on the display, or null if there is no display
+    private BoardRenderer renderer;
+    private final Board board;
+    // moves, passes and timings of the game, for its record in the game log
+    private GameRecord.Recorder recorder = null;
+    // moves made so far by darks and by lights, which are what a takeback can undo
+    private final int[] moveCounts = new int[2];
+
+    public LocalGame(Engine darkPlayer, Engine lightPlayer, PrintStream display) {
+        this(new Board(), darkPlayer, lightPlayer, display);
+    }
+
+    // creating a game that continues from the given board, with darks to move
+    public LocalGame(Board board, Engine darkPlayer, Engine lightPlayer, PrintStream display) {
+        this.board = board;
+        this.darkPlayer = darkPlayer;
+        this.lightPlayer = lightPlayer;
+        this.display = display;
+        this.renderer = display != null ? new BoardRenderer(display) : null;
+    }
+
+    // drawing the board with the given renderer instead of printing all of it after every move
+    public void setRenderer(BoardRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    // getting the record of the played game for the game log, which is only complete for a game played from the opening
+    public GameRecord toRecord(String darkName, String lightName) {
+        int difference = board.countTiles('D') - board.countTiles('L');
+        int result = difference > 0 ? GameRecord.DARK_WIN : difference < 0 ? GameRecord.LIGHT_WIN : GameRecord.DRAW;
+        return recorder.toRecord(darkName, lightName, result, false);
+    }
+
+    // playing the game until both players pass, returning how many more tiles darks have than lights
+    public int play() {
+        char colour = 'D';
+        boolean passed = false;
+        recorder = new GameRecord.Recorder();
+        printBoard(colour);
+        while (true) {
+            if (board.legalMoves(colour) != 0) {
+                int move = (colour == 'D' ? darkPlayer : lightPlayer).selectMove(board, colour);
+                if (move == Engine.TAKEBACK) {
+                    if (takeBack(colour)) {
+                        print("\n" + colourName(colour) + " took back their last move");
+                        // the turn before this colour's is its opponent's, which may have been a pass
+                        passed = board.getUndoCount() > 0 && board.lastWasPass();
+                        printBoard(colour);
+                    }
+                    else {
+                        print("No moves to take back");
+                    }
+                    continue;
+                }
+                board.pushMove(colour, move);
+                recorder.move(colour, move);
+                moveCounts[colour == 'D' ? 0 : 1]++;
+                print("\n" + colourName(colour) + " moved to " + Board.moveToString(move));
+                printBoard(Board.opponent(colour));
+                passed = false;
+            }
+            else if (passed) {
+                // both players have passed, so the game is over
+                break;
+            }
+            else {
+                print("No valid moves, " + colourName(colour) + " pass");
+                board.pushPass(colour);
+                recorder.pass(colour);
+                passed = true;
+            }
+            colour = Board.opponent(colour);
+        }
+        darkPlayer.gameOver(board, 'D');
+        lightPlayer.gameOver(board, 'L');
+        return board.countTiles('D') - board.countTiles('L');
+    }
+
+    // taking back every move and pass back to and including the given colour's last move, so it is that colour's turn again,
+    // returning false if the colour hasn't moved yet
+    private boolean takeBack(char colour) {
+        if (moveCounts[colour == 'D' ? 0 : 1] == 0) {
+            return false;
+        }
+        while (true) {
+            boolean pass = board.lastWasPass();
+            char undone = board.popMove();
+            recorder.undo(pass);
+            if (!pass) {
+                moveCounts[undone == 'D' ? 0 : 1]--;
+                if (undone == colour) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static String colourName(char colour) {
+        return colour == 'D' ? "darks(D)" : "lights(L)";
+    }
+
+    // printing the current status of the board, marking the legal moves of the player to move next
+    private void printBoard(char toMove) {
+        if (renderer == null) {
+            return;
+        }
+        renderer.render(board, board.legalMoves(toMove));
+    }
+
+    private void print(String message) {
+        if (display != null) {
+            display.println(message);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// headless game server that hosts many matches in one process on a single non-blocking selector
+// each connection is one match against a server engine, speaking the same MOVE/PASS/ERROR/result messages as the Reversi client,
+// in text or, if the client accepts it, the binary form
+public class MatchServer {
+    // protocol lines are short, so a small buffer per connection is enough
+    private static final int BUFFER_SIZE = 256;
+    // how often the server broadcasts its gameplay port to clients, in milliseconds
+    private static final long ANNOUNCE_INTERVAL = 5000;
+    private static final String USAGE = "Usage: java MatchServer <gameplay port> [<broadcast address> <broadcast port>] [--log <directory>] [--metrics <port>] [--spectators <port>]";
+    private static final byte[] OFFER_LINE = (GameConnection.BINARY_OFFER + "\n").getBytes(StandardCharsets.US_ASCII);
+
+    // state of one connection, with its read and write buffers and its match
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final ServerMatch match;
+        // client's address and port, which names it in the game log
+        final String clientName;
+        // where the match is shown to spectators, or null if it isn't broadcast
+        SpectatorHub.Broadcast broadcast = null;
+        // whether the client accepted the binary form of the protocol, after which every message both ways is one byte
+        boolean binary = false;
+        // System.nanoTime when the client was last sent a message it hasn't replied to, or 0 if it has replied
+        long sentAt = 0;
+
+        Connection(SocketChannel channel, ServerMatch match) {
+            this.channel = channel;
+            this.match = match;
+            this.clientName = ThreadedMatchServer.clientName(channel.socket());
+        }
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private DatagramChannel announceChannel = null;
+    private ByteBuffer announceMessage = null;
+    private InetSocketAddress announceTarget = null;
+    // abandoned matches are adjudicated on their own thread, as solving an endgame would hold up every other match on the selector
+    private final ExecutorService adjudicator = Executors.newSingleThreadExecutor();
+    // only used on the adjudicator thread
+    private final EndgameSolver solver = new EndgameSolver(ThreadedMatchServer.ADJUDICATION_TABLE_MEGABYTES);
+    // where the record of every match is written, or null if matches aren't logged
+    private final GameLog log;
+    // where matches are broadcast to spectators, or null if they aren't
+    private final SpectatorHub spectators;
+
+    public MatchServer(int gameplayPort, GameLog log, SpectatorHub spectators) throws IOException {
+        this.log = log;
+        this.spectators = spectators;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(gameplayPort));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    // broadcasting NEW GAME messages with the gameplay port, so Reversi clients listening on the broadcast port connect to the server
+    public void announce(InetAddress broadcastAddress, int broadcastPort) throws IOException {
+        announceChannel = DatagramChannel.open();
+        announceChannel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+        // same 14 byte message the Reversi client sends
+        String newGameMessage = "NEW GAME:" + serverChannel.socket().getLocalPort() + "\n";
+        announceMessage = ByteBuffer.wrap(newGameMessage.getBytes(StandardCharsets.UTF_8));
+        announceTarget = new InetSocketAddress(broadcastAddress, broadcastPort);
+    }
+
+    // running the server until the process is stopped
+    public void run() throws IOException {
+        System.out.println("listening for TCP connections on port " + serverChannel.socket().getLocalPort());
+        long nextAnnouncement = 0;
+        while (true) {
+            // sending the next announcement if it is due, then waiting on the selector until the one after
+            if (announceChannel != null) {
+                long now = System.currentTimeMillis();
+                if (now >= nextAnnouncement) {
+                    announceChannel.send(announceMessage.duplicate(), announceTarget);
+                    nextAnnouncement = now + ANNOUNCE_INTERVAL;
+                }
+                selector.select(Math.max(1, nextAnnouncement - now));
+            }
+            else {
+                selector.select();
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                // try catch block so a broken connection only ends its own match
+                try {
+                    if (key.isAcceptable()) {
+                        accept();
+                    }
+                    else {
+                        if (key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    }
+                } catch (IOException e) {
+                    // the server keeps listening if an accept fails, only client connections are closed
+                    if (key.channel() != serverChannel) {
+                        close(key);
+                    }
+                }
+            }
+        }
+    }
+
+    // accepting a new client and starting its match by sending the server's first move
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel, new ServerMatch(new RandomEngine()));
+        if (spectators != null) {
+            connection.broadcast = spectators.open("server", connection.clientName);
+            connection.match.setBroadcast(connection.broadcast);
+        }
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+        // offering the binary form before the first move, which clients that don't support it ignore
+        connection.writeBuffer.put(OFFER_LINE);
+        send(key, connection.match.start());
+    }
+
+    // reading from the client and handling every complete message received, which are lines until the client accepts the binary form
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.readBuffer) < 0) {
+            close(key);
+            return;
+        }
+        ByteBuffer buffer = connection.readBuffer;
+        buffer.flip();
+        byte[] bytes = buffer.array();
+        int position = 0;
+        while (position < buffer.limit()) {
+            int message;
+            if (connection.binary) {
+                message = bytes[position++] & 0xff;
+                if (message > GameConnection.ERROR) {
+                    message = GameConnection.INVALID;
+                }
+            }
+            else {
+                int lineEnd = position;
+                while (lineEnd < buffer.limit() && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                if (lineEnd == buffer.limit()) {
+                    break;
+                }
+                message = GameConnection.parseLine(bytes, position, lineEnd);
+                position = lineEnd + 1;
+                if (message == GameConnection.ACCEPT) {
+                    // the rest of the client's messages, and every message sent to it, are single bytes from here
+                    connection.binary = true;
+                    continue;
+                }
+                if (message == GameConnection.OFFER || message == GameConnection.UNKNOWN) {
+                    continue;
+                }
+            }
+            if (connection.sentAt != 0) {
+                Metrics.OPPONENT_ROUND_TRIP.recordSince(connection.sentAt);
+                connection.sentAt = 0;
+            }
+            int reply = connection.match.receive(message);
+            if (reply != ServerMatch.NO_REPLY) {
+                send(key, reply);
+            }
+        }
+        buffer.position(position);
+        buffer.compact();
+        // a full buffer without a line ending can't be a protocol line, so the client is dropped
+        if (!buffer.hasRemaining()) {
+            close(key);
+            return;
+        }
+        if (connection.match.isFinished() && connection.writeBuffer.position() == 0) {
+            close(key);
+        }
+    }
+
+    // writing as much of the pending output as the socket accepts, closing the connection once a finished match has sent everything
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = connection.writeBuffer;
+        buffer.flip();
+        connection.channel.write(buffer);
+        buffer.compact();
+        if (buffer.position() == 0) {
+            if (connection.match.isFinished()) {
+                close(key);
+            }
+            else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    // adding a message to the connection's output and waiting for the socket to be writable, where every message sent while
+    // handling one read goes out together in the next write
+    private void send(SelectionKey key, int message) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = connection.writeBuffer;
+        // a text message is at most 9 bytes
+        if (buffer.remaining() < 9) {
+            throw new IOException("client isn't reading its output");
+        }
+        if (connection.sentAt == 0) {
+            connection.sentAt = System.nanoTime();
+        }
+        if (connection.binary) {
+            buffer.put((byte) message);
+        }
+        else {
+            buffer.position(GameConnection.writeText(buffer.array(), buffer.position(), message));
+        }
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    // closing the connection, which ends its match, adjudicating the match if the client left before it finished
+    private void close(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        ServerMatch match = connection.match;
+        if (!match.isFinished()) {
+            // the match isn't touched by the selector once its connection is closed, so the adjudicator thread can have it
+            adjudicator.execute(() -> {
+                String result = match.adjudicate(solver);
+                if (!result.equals("ERROR")) {
+                    System.out.println("adjudicated abandoned match, client result: " + result);
+                }
+                finished(connection);
+            });
+        }
+        else {
+            finished(connection);
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // connection is being dropped anyway
+        }
+    }
+
+    // logging a finished match and showing its result to spectators
+    private void finished(Connection connection) {
+        GameRecord record = connection.match.toRecord(connection.clientName);
+        if (log != null) {
+            log.append(record);
+        }
+        if (connection.broadcast != null) {
+            connection.broadcast.finish(record.getResult());
+        }
+    }
+
+    // main method
+    public static void main(String[] args) {
+        Options options = null;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        if (options.positionalCount() != 1 && options.positionalCount() != 3) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        try {
+            int gameplayPort = Integer.parseInt(options.positional(0));
+            if (gameplayPort <= 0) {
+                throw new NumberFormatException();
+            }
+            GameLog log = options.has("log") ? new GameLog(Paths.get(options.get("log", "games"))) : null;
+            if (options.has("metrics")) {
+                Metrics.serve(options.getInt("metrics", 0));
+            }
+            SpectatorHub spectators = options.has("spectators") ? new SpectatorHub(options.getInt("spectators", 0)) : null;
+            MatchServer server = new MatchServer(gameplayPort, log, spectators);
+            if (options.positionalCount() == 3) {
+                int broadcastPort = Integer.parseInt(options.positional(2));
+                if (broadcastPort <= 0) {
+                    throw new NumberFormatException();
+                }
+                server.announce(InetAddress.getByName(options.positional(1)), broadcastPort);
+            }
+            server.run();
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: Didn't find positive integer for port command-line argument, --metrics or --spectators");
+            System.exit(1);
+        } catch (UnknownHostException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: No IP address for the host could be found based on broadcast address command-line argument");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (SocketException e) {
+            System.err.println("ERROR: Socket unable to bind to port " + options.positional(0));
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to open game log, create socket or receive or send packet");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+
+// finds an opponent on the local network, listening for UDP NEW GAME offers and TCP connections at the same time on one selector
+// both sockets are bound once for the whole search, and an offer is broadcast when matchmaking starts and then every second
+// a peer that hears an offer replies straight to the sender with its own offer, so both peers know each other within one round trip,
+// and then the peer with the lower address and gameplay port connects to the other, so two peers never connect to each other at once
+// the peer that connects plays lights and the peer that accepts plays darks, the same as the peer that heard or sent the offer before
+// with a lobby, nothing is broadcast: the peer sends JOIN to the lobby instead, and either waits for a connection or is told who to connect to
+public class Matchmaker {
+    // offers are sent as NEW GAME:<gameplay port> with a line ending, which is 14 bytes as the port is always 4 digits
+    private static final int OFFER_SIZE = 14;
+    // longest message read, which is enough for a lobby PAIR:<address>:<gameplay port> line
+    private static final int MESSAGE_SIZE = 64;
+    private static final int MIN_GAMEPLAY_PORT = PortAllocator.MIN_GAMEPLAY_PORT;
+    private static final int MAX_GAMEPLAY_PORT = PortAllocator.MAX_GAMEPLAY_PORT;
+    // how often the offer is broadcast again while no opponent has been found, in milliseconds
+    private static final long OFFER_INTERVAL = 1000;
+    // how long to wait for a peer with a lower address to connect before connecting to it anyway, as older clients that are
+    // waiting on their own connections never connect to an offer, in milliseconds
+    private static final long CONNECT_GRACE = 500;
+    // how often JOIN is sent to the lobby again while waiting, which keeps this peer in the lobby's queue, in milliseconds
+    private static final long JOIN_INTERVAL = Lobby.JOIN_TIMEOUT / 3;
+
+    // where offers are sent, which is the lobby when there is one
+    private final InetSocketAddress offerTarget;
+    private final boolean lobby;
+    private final InetAddress localAddress;
+    private final PortAllocator ports;
+    private final Selector selector;
+    private final DatagramChannel udpChannel;
+    private final ServerSocketChannel listenChannel;
+    private final int gameplayPort;
+    private final ByteBuffer offer;
+    private final ByteBuffer received = ByteBuffer.allocate(MESSAGE_SIZE);
+    // peers that have been replied to, with the time to connect to them if they haven't connected first
+    private final HashMap<InetSocketAddress, Long> peers = new HashMap<InetSocketAddress, Long>();
+    // connection being made to a peer, or null if there isn't one
+    private SocketChannel connecting = null;
+    // System.nanoTime when the connection being made was started
+    private long connectStart = 0;
+    private long nextOffer = 0;
+    private char colour;
+    // where progress messages are printed, or null to find an opponent without printing anything
+    private PrintStream display = System.out;
+
+    // binding the UDP socket to the allocator's address and the given port, and taking a TCP listener on a gameplay port from the allocator,
+    // where offers are sent to the offer address on the same UDP port
+    public Matchmaker(PortAllocator ports, int port, InetAddress offerAddress) throws IOException {
+        this(ports, port, new InetSocketAddress(offerAddress, port), false, Lobby.DEFAULT_RATING);
+    }
+
+    // binding the sockets the same way, but registering with the lobby at the given address on the same UDP port instead of
+    // broadcasting offers, where the lobby pairs players with ratings close to the given one
+    public Matchmaker(PortAllocator ports, int port, InetAddress lobbyAddress, int rating) throws IOException {
+        this(ports, port, new InetSocketAddress(lobbyAddress, port), true, rating);
+    }
+
+    private Matchmaker(PortAllocator ports, int port, InetSocketAddress offerTarget, boolean lobby, int rating) throws IOException {
+        this.ports = ports;
+        localAddress = ports.getAddress();
+        this.offerTarget = offerTarget;
+        this.lobby = lobby;
+        selector = Selector.open();
+        udpChannel = DatagramChannel.open();
+        udpChannel.setOption(StandardSocketOptions.SO_BROADCAST, !lobby);
+        udpChannel.bind(new InetSocketAddress(localAddress, port));
+        udpChannel.configureBlocking(false);
+        udpChannel.register(selector, SelectionKey.OP_READ);
+        // the listener is already bound, so the port offered to peers always accepts their connections
+        try {
+            listenChannel = ports.acquire();
+        } catch (IOException e) {
+            udpChannel.close();
+            selector.close();
+            throw e;
+        }
+        gameplayPort = listenChannel.socket().getLocalPort();
+        listenChannel.register(selector, SelectionKey.OP_ACCEPT);
+        String message = lobby ? "JOIN:" + gameplayPort + ":" + rating : "NEW GAME:" + gameplayPort;
+        offer = ByteBuffer.wrap((message + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void setDisplay(PrintStream display) {
+        this.display = display;
+    }
+
+    public int getGameplayPort() {
+        return gameplayPort;
+    }
+
+    // getting the colour played on the connection returned by pair, D if the opponent connected and L if this peer connected
+    public char getColour() {
+        return colour;
+    }
+
+    // waiting until an opponent is found, returning the blocking socket connected to it, after which the UDP socket is closed and the
+    // listener is handed back to the allocator
+    public Socket pair() throws IOException {
+        long start = System.nanoTime();
+        try {
+            print("listening for UDP messages at on port " + udpChannel.socket().getLocalPort());
+            print("listening for TCP connections on port " + gameplayPort);
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (now >= nextOffer) {
+                    sendOffer(offerTarget);
+                    nextOffer = now + (lobby ? JOIN_INTERVAL : OFFER_INTERVAL);
+                }
+                // connecting to peers with a lower address that haven't connected within the grace period
+                long wake = nextOffer;
+                if (connecting == null) {
+                    for (HashMap.Entry<InetSocketAddress, Long> peer : peers.entrySet()) {
+                        if (peer.getValue() <= now) {
+                            Socket socket = connect(peer.getKey());
+                            if (socket != null) {
+                                print("Connection established, initialising game...");
+                                Metrics.PAIR_TIME.recordSince(start);
+                                return socket;
+                            }
+                            break;
+                        }
+                        wake = Math.min(wake, peer.getValue());
+                    }
+                }
+                selector.select(Math.max(1, wake - now));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Socket socket = null;
+                    if (key.isAcceptable()) {
+                        socket = accept();
+                    }
+                    else if (key.isConnectable()) {
+                        socket = finishConnect(key);
+                    }
+                    else if (key.isReadable()) {
+                        if (lobby) {
+                            receivePairings();
+                        }
+                        else {
+                            receiveOffers();
+                        }
+                    }
+                    if (socket != null) {
+                        print("Connection established, initialising game...");
+                        Metrics.PAIR_TIME.recordSince(start);
+                        return socket;
+                    }
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    // reading every offer waiting on the UDP socket
+    private void receiveOffers() throws IOException {
+        while (true) {
+            received.clear();
+            InetSocketAddress source = (InetSocketAddress) udpChannel.receive(received);
+            if (source == null) {
+                return;
+            }
+            String message = new String(received.array(), 0, received.position(), StandardCharsets.UTF_8);
+            if (!message.startsWith("NEW GAME:") || received.position() != OFFER_SIZE) {
+                continue;
+            }
+            int port;
+            try {
+                port = Integer.parseInt(message.substring(9, OFFER_SIZE - 1));
+                if (port < MIN_GAMEPLAY_PORT || port > MAX_GAMEPLAY_PORT) {
+                    throw new NumberFormatException("Integer not between 9000 and 9100");
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("ERROR: Received invalid gameplay port in message, gameplay port must be an integer between 9000 and 9100");
+                continue;
+            }
+            // the opponent's gameplay socket is on the address the offer came from
+            InetSocketAddress peer = new InetSocketAddress(source.getAddress(), port);
+            // broadcasts come back to the sender, so this peer's own offers are ignored
+            if (port == gameplayPort && source.getAddress().equals(localAddress)) {
+                continue;
+            }
+            if (peers.containsKey(peer)) {
+                continue;
+            }
+            // replying straight to the peer, so it knows about this peer even if it missed the broadcast
+            sendOffer(source);
+            if (compare(peer) < 0) {
+                // this peer is lower, so it connects straight away
+                peers.put(peer, 0L);
+            }
+            else {
+                // the peer is lower and connects once it has the reply, unless it is an older client that never will
+                peers.put(peer, System.currentTimeMillis() + CONNECT_GRACE);
+            }
+        }
+    }
+
+    // reading every lobby reply waiting on the UDP socket, connecting to the opponent the lobby pairs this peer with
+    private void receivePairings() throws IOException {
+        while (true) {
+            received.clear();
+            InetSocketAddress source = (InetSocketAddress) udpChannel.receive(received);
+            if (source == null) {
+                return;
+            }
+            // only the lobby is listened to, so offers broadcast by other peers are ignored
+            if (!source.equals(offerTarget)) {
+                continue;
+            }
+            String message = new String(received.array(), 0, received.position(), StandardCharsets.UTF_8).trim();
+            if (!message.startsWith("PAIR:")) {
+                // WAIT, where this peer is queued until an opponent joins and connects to it
+                continue;
+            }
+            int separator = message.lastIndexOf(':');
+            try {
+                int port = Integer.parseInt(message.substring(separator + 1));
+                if (port < MIN_GAMEPLAY_PORT || port > MAX_GAMEPLAY_PORT) {
+                    throw new NumberFormatException("Integer not between 9000 and 9100");
+                }
+                peers.put(new InetSocketAddress(InetAddress.getByName(message.substring(5, separator)), port), 0L);
+            } catch (NumberFormatException | UnknownHostException e) {
+                System.err.println("ERROR: Received invalid pairing from lobby: " + message);
+            }
+        }
+    }
+
+    // comparing this peer's address and gameplay port with another peer's, returning a negative number if this peer is lower
+    private int compare(InetSocketAddress peer) {
+        byte[] local = localAddress.getAddress();
+        byte[] other = peer.getAddress().getAddress();
+        if (local.length != other.length) {
+            return local.length - other.length;
+        }
+        for (int i = 0; i < local.length; i++) {
+            if (local[i] != other[i]) {
+                return (local[i] & 0xff) - (other[i] & 0xff);
+            }
+        }
+        return gameplayPort - peer.getPort();
+    }
+
+    private void sendOffer(InetSocketAddress target) {
+        try {
+            udpChannel.send(offer.duplicate(), target);
+            print("sent UDP message: " + new String(offer.array(), 0, offer.limit() - 1, StandardCharsets.UTF_8) + " to " + target.getAddress() + " at port " + target.getPort());
+        } catch (IOException e) {
+            // the offer may not be deliverable (e.g. no route for broadcasts), but offers from other peers can still be answered
+            System.err.println("ERROR: Unable to send UDP message to " + target.getAddress() + ": " + e.getMessage());
+        }
+    }
+
+    // starting a non-blocking connection to the peer's gameplay socket, returning its socket if it connected straight away
+    private Socket connect(InetSocketAddress peer) throws IOException {
+        peers.remove(peer);
+        connecting = SocketChannel.open();
+        connecting.configureBlocking(false);
+        connectStart = System.nanoTime();
+        try {
+            if (connecting.connect(peer)) {
+                Metrics.CONNECT_TIME.recordSince(connectStart);
+                colour = 'L';
+                return toBlockingSocket(connecting);
+            }
+        } catch (IOException e) {
+            connectionFailed(connecting);
+            return null;
+        }
+        connecting.register(selector, SelectionKey.OP_CONNECT);
+        return null;
+    }
+
+    // finishing the connection to a peer, returning its socket, or null if the peer refused it
+    private Socket finishConnect(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            channel.finishConnect();
+            Metrics.CONNECT_TIME.recordSince(connectStart);
+            colour = 'L';
+            return toBlockingSocket(channel);
+        } catch (IOException e) {
+            connectionFailed(channel);
+            return null;
+        }
+    }
+
+    // dropping a connection the peer refused, carrying on with matchmaking
+    private void connectionFailed(SocketChannel channel) {
+        // the peer has gone or paired with someone else
+        print("Unable to connect to opponent, still looking for an opponent");
+        Metrics.CONNECT_FAILURES.increment();
+        try {
+            channel.close();
+        } catch (IOException closeError) {
+            // channel is being dropped anyway
+        }
+        connecting = null;
+        if (lobby) {
+            // joining the lobby again straight away, as the lobby no longer has this peer in its queue
+            nextOffer = 0;
+        }
+    }
+
+    // accepting a connection from a peer
+    private Socket accept() throws IOException {
+        SocketChannel channel = listenChannel.accept();
+        if (channel == null) {
+            return null;
+        }
+        colour = 'D';
+        return toBlockingSocket(channel);
+    }
+
+    // switching a connected channel to blocking mode, so the game can use its socket's streams
+    private Socket toBlockingSocket(SocketChannel channel) throws IOException {
+        if (connecting != null && connecting != channel) {
+            connecting.close();
+        }
+        connecting = null;
+        SelectionKey key = channel.keyFor(selector);
+        if (key != null) {
+            key.cancel();
+            // the cancelled key is only removed from the selector by the next select
+            selector.selectNow();
+        }
+        channel.configureBlocking(true);
+        channel.socket().setTcpNoDelay(true);
+        return channel.socket();
+    }
+
+    private void print(String message) {
+        if (display != null) {
+            display.println(message);
+        }
+    }
+
+    // closing the UDP socket, along with any connection that wasn't completed, and handing the listener back
+    private void close() throws IOException {
+        if (connecting != null) {
+            connecting.close();
+            connecting = null;
+        }
+        udpChannel.close();
+        // closing the selector deregisters the listener, so it can be registered with the next match's selector
+        selector.close();
+        ports.release(listenChannel);
+    }
+}
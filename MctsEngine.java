@@ -0,0 +1,338 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// computer player that uses Monte Carlo tree search, which needs no evaluation: positions are judged by playing random games from them
+// each playout walks down the tree choosing moves with UCT (the upper confidence bound of each move's win rate), adds the children of the
+// position it reaches once it has been reached before, plays random moves to the end of the game, and adds the result to every position
+// on the way back up, and the move played is the one tried the most
+// the tree lives in a pool of nodes kept in flat arrays that are allocated once and reused for every move, and playouts are done on bitboards
+// in local variables, so searching creates no objects at all
+// with more than one thread, every thread walks the same tree at once, and a thread counts its visit to a position as a loss until its
+// playout finishes (virtual loss), so the other threads are steered towards other moves instead of all repeating the same one
+public class MctsEngine implements Engine {
+    // how much the UCT bound favours moves that have been tried less over moves that have won more
+    private static final double EXPLORATION = 0.7;
+    // visits to a position, counting the one in progress, before its children are added, so positions only reached once take no nodes
+    private static final int EXPANSION_VISITS = 2;
+    // move of a node that passes
+    private static final int PASS = 64;
+    // deepest a walk down the tree can go, as a game has at most 60 moves and a pass is always followed by a move or the end of the game
+    private static final int MAX_DEPTH = 128;
+    // playouts each thread makes between looking at the clock
+    private static final int CLOCK_INTERVAL = 16;
+    // bytes each node takes in the pool
+    private static final int NODE_BYTES = 14;
+
+    // children of a node, which is the index of its first child (the rest follow it) once it has been expanded, or one of these
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+    private static final int GAME_OVER = -3;
+    // a visit added to a node's statistics, which hold the number of visits in the top half and the number of wins in the bottom half,
+    // counted in half wins so a draw is one, for the player who moved into the node
+    private static final long VISIT = 1L << 32;
+
+    // the node pool, where node 0 is the position being searched
+    private final int capacity;
+    private final AtomicLongArray statistics;
+    private final AtomicIntegerArray children;
+    private final byte[] childCounts;
+    private final byte[] moves;
+    private final AtomicInteger nextNode = new AtomicInteger();
+    // set once the pool has run out of nodes, after which the tree stops growing but playouts go on from its leaves
+    private volatile boolean full;
+
+    private final long timeBudget;
+    // one worker per thread, where the first runs on the thread calling selectMove and the rest on the helper threads
+    private final Worker[] workers;
+    private final ExecutorService helpers;
+    private final Future<?>[] running;
+    // book of moves to play instead of searching in the opening, or null if there isn't one
+    private OpeningBook book = null;
+    private volatile boolean stopped;
+    private long deadline;
+    private long lastPlayouts;
+    private long lastTime;
+    private double lastWinRate;
+
+    // creating a single threaded engine with the time budget per move in milliseconds and the node pool size in megabytes
+    public MctsEngine(long timeBudgetMillis, int treeMegabytes) {
+        this(timeBudgetMillis, treeMegabytes, 1);
+    }
+
+    // creating an engine that makes playouts with the given number of threads
+    public MctsEngine(long timeBudgetMillis, int treeMegabytes, int threads) {
+        this.timeBudget = timeBudgetMillis * 1000000L;
+        capacity = (int) Math.min(Math.max(1024, ((long) treeMegabytes << 20) / NODE_BYTES), Integer.MAX_VALUE / 2);
+        statistics = new AtomicLongArray(capacity);
+        children = new AtomicIntegerArray(capacity);
+        childCounts = new byte[capacity];
+        moves = new byte[capacity];
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            // seeding every thread differently, so they don't play the same random games
+            workers[i] = new Worker(System.nanoTime() * (2 * i + 1) | 1);
+        }
+        running = new Future<?>[threads];
+        // helper threads are daemons, so an engine that is no longer used doesn't keep the process running
+        helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, task -> {
+            Thread thread = new Thread(task, "playout helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // using the opening book's move for any position in the book, instead of searching
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    public int selectMove(Board board, char colour) {
+        if (book != null) {
+            int move = book.lookup(board, colour);
+            if (move >= 0) {
+                lastPlayouts = 0;
+                return move;
+            }
+        }
+        return search(board, colour, System.nanoTime() + timeBudget);
+    }
+
+    // getting the number of playouts made by all threads while choosing the last move
+    public long getPlayouts() {
+        return lastPlayouts;
+    }
+
+    // getting the number of playouts made per second by all threads while choosing the last move
+    public double getPlayoutsPerSecond() {
+        return lastTime == 0 ? 0 : lastPlayouts * 1e9 / lastTime;
+    }
+
+    // getting how often the chosen move won its playouts, from 0 to 1, which is how good the engine thinks its position is
+    public double getLastWinRate() {
+        return lastWinRate;
+    }
+
+    // getting the number of nodes the last search took from the pool
+    public int getTreeSize() {
+        return Math.min(nextNode.get(), capacity);
+    }
+
+    // making playouts with every thread until the deadline passes, returning the move that was tried the most
+    private int search(Board board, char colour, long deadline) {
+        long player = board.getTiles(colour);
+        long opponent = board.getTiles(Board.opponent(colour));
+        long start = System.nanoTime();
+        // emptying the pool, which only needs the root reset as every other node is set up when it is taken from the pool
+        nextNode.set(1);
+        full = false;
+        statistics.set(0, 0);
+        children.set(0, EXPANDING);
+        int first = expand(0, player, opponent);
+        // there's nothing to search with only one move
+        if (childCounts[0] == 1) {
+            lastPlayouts = 0;
+            lastTime = 0;
+            lastWinRate = 0;
+            return moves[first];
+        }
+        this.deadline = deadline;
+        stopped = false;
+        for (Worker worker : workers) {
+            worker.playouts = 0;
+        }
+        for (int i = 1; i < workers.length; i++) {
+            Worker helper = workers[i];
+            running[i] = helpers.submit(() -> helper.run(player, opponent, false));
+        }
+        workers[0].run(player, opponent, true);
+        // waiting for the helpers, so they don't keep using the pool during the next search
+        for (int i = 1; i < workers.length; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("playout helper failed", e);
+            }
+        }
+        lastTime = System.nanoTime() - start;
+        lastPlayouts = 0;
+        for (Worker worker : workers) {
+            lastPlayouts += worker.playouts;
+        }
+        int best = first;
+        for (int child = first + 1; child < first + childCounts[0]; child++) {
+            if (statistics.get(child) >>> 32 > statistics.get(best) >>> 32) {
+                best = child;
+            }
+        }
+        long bestStatistics = statistics.get(best);
+        lastWinRate = (bestStatistics >>> 32) == 0 ? 0 : (int) bestStatistics / (2.0 * (bestStatistics >>> 32));
+        return moves[best];
+    }
+
+    // adding the children of a node that this thread has marked as expanding, one for each legal move or a single pass,
+    // returning the first child, or a negative number if the game is over or the pool is full and the node is left a leaf
+    private int expand(int node, long player, long opponent) {
+        long legal = Board.legalMoves(player, opponent);
+        int count = Long.bitCount(legal);
+        if (count == 0) {
+            if (Board.legalMoves(opponent, player) == 0) {
+                children.set(node, GAME_OVER);
+                return GAME_OVER;
+            }
+            count = 1;
+        }
+        int first = nextNode.getAndAdd(count);
+        if (first > capacity - count) {
+            full = true;
+            children.set(node, UNEXPANDED);
+            return UNEXPANDED;
+        }
+        if (legal == 0) {
+            moves[first] = PASS;
+            statistics.set(first, 0);
+            children.set(first, UNEXPANDED);
+        }
+        for (int child = first; legal != 0; legal &= legal - 1, child++) {
+            moves[child] = (byte) Long.numberOfTrailingZeros(legal);
+            statistics.set(child, 0);
+            children.set(child, UNEXPANDED);
+        }
+        childCounts[node] = (byte) count;
+        // setting the node's children last, which makes everything written above visible to the threads that read it
+        children.set(node, first);
+        return first;
+    }
+
+    // choosing the child of an expanded node with the highest upper confidence bound on its win rate, trying every child once first
+    private int selectChild(int node, int first) {
+        double logVisits = Math.log(statistics.get(node) >>> 32);
+        int best = first;
+        double bestBound = -1;
+        for (int child = first; child < first + childCounts[node]; child++) {
+            long childStatistics = statistics.get(child);
+            long visits = childStatistics >>> 32;
+            if (visits == 0) {
+                return child;
+            }
+            double bound = (int) childStatistics / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+            if (bound > bestBound) {
+                bestBound = bound;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    // state of one thread making playouts, with its own random number generator and path through the tree
+    private class Worker {
+        private final int[] path = new int[MAX_DEPTH];
+        // state of the xorshift random number generator, which is much faster than sharing a Random between threads
+        private long random;
+        private long playouts;
+
+        Worker(long seed) {
+            random = seed;
+        }
+
+        // making playouts until the deadline passes, where the main worker looks at the clock and stops the others
+        void run(long rootPlayer, long rootOpponent, boolean main) {
+            while (!stopped) {
+                for (int i = 0; i < CLOCK_INTERVAL; i++) {
+                    playout(rootPlayer, rootOpponent);
+                }
+                playouts += CLOCK_INTERVAL;
+                if (main && System.nanoTime() > deadline) {
+                    stopped = true;
+                }
+            }
+        }
+
+        // walking down the tree to a leaf, playing a random game from it and adding the result to every node on the path
+        private void playout(long player, long opponent) {
+            int node = 0;
+            int depth = 0;
+            path[depth++] = 0;
+            statistics.getAndAdd(0, VISIT);
+            while (true) {
+                int first = children.get(node);
+                if (first < 0) {
+                    // only the thread that marks the node as expanding adds its children, and the others play out from the leaf meanwhile
+                    if (first == UNEXPANDED && !full && (statistics.get(node) >>> 32) >= EXPANSION_VISITS
+                            && children.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                        first = expand(node, player, opponent);
+                    }
+                    if (first < 0) {
+                        break;
+                    }
+                }
+                node = selectChild(node, first);
+                // the visit counts as a loss for this move until the playout's result is added, which is the virtual loss
+                statistics.getAndAdd(node, VISIT);
+                path[depth++] = node;
+                int square = moves[node];
+                if (square != PASS) {
+                    long flipped = Board.flips(player, opponent, square);
+                    player |= flipped | (1L << square);
+                    opponent &= ~flipped;
+                }
+                long swap = player;
+                player = opponent;
+                opponent = swap;
+            }
+            // the result is for the player to move at the leaf, and each node holds the wins of the player who moved into it
+            int wins = 2 - randomGame(player, opponent);
+            for (int i = depth - 1; i >= 0; i--) {
+                statistics.getAndAdd(path[i], wins);
+                wins = 2 - wins;
+            }
+        }
+
+        // playing random moves until the game ends, returning 2 if the player to move wins, 1 for a draw and 0 if the opponent wins
+        private int randomGame(long player, long opponent) {
+            boolean swapped = false;
+            boolean passed = false;
+            while (true) {
+                long legal = Board.legalMoves(player, opponent);
+                if (legal != 0) {
+                    // skipping a random number of the set bits to get a random move
+                    for (int skip = nextInt(Long.bitCount(legal)); skip > 0; skip--) {
+                        legal &= legal - 1;
+                    }
+                    int square = Long.numberOfTrailingZeros(legal);
+                    long flipped = Board.flips(player, opponent, square);
+                    player |= flipped | (1L << square);
+                    opponent &= ~flipped;
+                    passed = false;
+                }
+                else if (passed) {
+                    break;
+                }
+                else {
+                    passed = true;
+                }
+                long swap = player;
+                player = opponent;
+                opponent = swap;
+                swapped = !swapped;
+            }
+            int difference = Long.bitCount(player) - Long.bitCount(opponent);
+            if (swapped) {
+                difference = -difference;
+            }
+            return difference > 0 ? 2 : difference == 0 ? 1 : 0;
+        }
+
+        // getting a random number from 0 up to but not including the bound, with xorshift64*
+        private int nextInt(int bound) {
+            random ^= random >>> 12;
+            random ^= random << 25;
+            random ^= random >>> 27;
+            return (int) (((random * 0x2545F4914F6CDD1DL >>> 32) * bound) >>> 32);
+        }
+    }
+}
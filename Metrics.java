@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// counters and latency histograms for the hot paths of matchmaking and games, shared by everything in the process
+// recording is lock free, so instruments are updated inline on every move, and a snapshot of all of them can be taken at any time
+// as text or JSON, either by calling snapshot or by connecting to the port given to serve
+// the opponent round trip is the time from sending a message to the opponent to receiving its reply, which is the network delay
+// plus the opponent's thinking time, and the local move time is this player's thinking time, so the two can be told apart
+public class Metrics {
+    private static final Map<String, Histogram> HISTOGRAMS = new LinkedHashMap<String, Histogram>();
+    private static final Map<String, LongAdder> COUNTERS = new LinkedHashMap<String, LongAdder>();
+    // percentiles given in snapshots
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    // longest request line read from a snapshot connection
+    private static final int MAX_REQUEST = 256;
+
+    // time from starting matchmaking to having a connected opponent
+    public static final Histogram PAIR_TIME = histogram("matchmaking.pair_time");
+    // time for a TCP connection to an opponent to be established
+    public static final Histogram CONNECT_TIME = histogram("matchmaking.connect_time");
+    public static final LongAdder CONNECT_FAILURES = counter("matchmaking.connect_failures");
+    // time from sending a message to the opponent to receiving the opponent's next message
+    public static final Histogram OPPONENT_ROUND_TRIP = histogram("game.opponent_round_trip");
+    // time the local player (user, computer or server engine) took to choose each move
+    public static final Histogram LOCAL_MOVE_TIME = histogram("game.local_move_time");
+    // games by how they ended
+    public static final LongAdder GAMES_FINISHED = counter("games.finished");
+    public static final LongAdder GAMES_ILLEGAL_MOVE = counter("games.aborted.illegal_move");
+    public static final LongAdder GAMES_OPPONENT_ERROR = counter("games.aborted.opponent_error");
+    public static final LongAdder GAMES_CONNECTION_LOST = counter("games.aborted.connection_lost");
+    public static final LongAdder GAMES_LOCAL_QUIT = counter("games.aborted.local_quit");
+    // abandoned games whose result was decided by the endgame solver, which are also counted as connection lost
+    public static final LongAdder GAMES_ADJUDICATED = counter("games.adjudicated");
+    // spectators that fell too far behind a match and were skipped ahead to the board
+    public static final LongAdder SPECTATOR_RESYNCS = counter("spectators.resyncs");
+
+    private static Histogram histogram(String name) {
+        Histogram histogram = new Histogram();
+        HISTOGRAMS.put(name, histogram);
+        return histogram;
+    }
+
+    private static LongAdder counter(String name) {
+        LongAdder counter = new LongAdder();
+        COUNTERS.put(name, counter);
+        return counter;
+    }
+
+    // getting a snapshot of every counter and histogram, in text or JSON, with times in microseconds
+    public static String snapshot(boolean json) {
+        StringBuilder output = new StringBuilder();
+        if (json) {
+            output.append("{\"counters\":{");
+            boolean first = true;
+            for (Map.Entry<String, LongAdder> counter : COUNTERS.entrySet()) {
+                output.append(first ? "" : ",").append('"').append(counter.getKey()).append("\":").append(counter.getValue().sum());
+                first = false;
+            }
+            output.append("},\"histograms\":{");
+            first = true;
+            for (Map.Entry<String, Histogram> entry : HISTOGRAMS.entrySet()) {
+                Histogram histogram = entry.getValue();
+                long[] percentiles = histogram.getPercentiles(PERCENTILES);
+                output.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":{\"count\":").append(histogram.getCount())
+                    .append(",\"mean_us\":").append(micros(histogram.getMean()));
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    output.append(",\"").append(PERCENTILE_NAMES[i]).append("_us\":").append(micros(percentiles[i]));
+                }
+                output.append(",\"max_us\":").append(micros(histogram.getMax())).append('}');
+                first = false;
+            }
+            output.append("}}\n");
+        }
+        else {
+            for (Map.Entry<String, LongAdder> counter : COUNTERS.entrySet()) {
+                output.append(counter.getKey()).append(' ').append(counter.getValue().sum()).append('\n');
+            }
+            for (Map.Entry<String, Histogram> entry : HISTOGRAMS.entrySet()) {
+                Histogram histogram = entry.getValue();
+                long[] percentiles = histogram.getPercentiles(PERCENTILES);
+                output.append(entry.getKey()).append(" count=").append(histogram.getCount()).append(" mean=").append(micros(histogram.getMean()))
+                    .append("us");
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    output.append(' ').append(PERCENTILE_NAMES[i]).append('=').append(micros(percentiles[i])).append("us");
+                }
+                output.append(" max=").append(micros(histogram.getMax())).append("us\n");
+            }
+        }
+        return output.toString();
+    }
+
+    // writing nanoseconds as microseconds with one decimal place
+    private static String micros(long nanos) {
+        return (nanos / 1000) + "." + (nanos % 1000 / 100);
+    }
+
+    // serving snapshots on the given TCP port from a background thread
+    // a connection gets the text snapshot, or the JSON one if the first line it sends contains json, and plain HTTP GET requests
+    // (like curl http://host:port/json) get the same with an HTTP header
+    public static void serve(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port);
+        Thread server = new Thread(() -> {
+            while (true) {
+                try (Socket socket = serverSocket.accept()) {
+                    socket.setSoTimeout(1000);
+                    String request = readLine(socket.getInputStream());
+                    boolean json = request.contains("json");
+                    byte[] body = snapshot(json).getBytes(StandardCharsets.UTF_8);
+                    OutputStream out = socket.getOutputStream();
+                    if (request.startsWith("GET ")) {
+                        String header = "HTTP/1.0 200 OK\r\nContent-Type: " + (json ? "application/json" : "text/plain") + "\r\nContent-Length: "
+                            + body.length + "\r\nConnection: close\r\n\r\n";
+                        out.write(header.getBytes(StandardCharsets.US_ASCII));
+                    }
+                    out.write(body);
+                    out.flush();
+                } catch (IOException e) {
+                    // only this request fails, and the next connection is served as normal
+                }
+            }
+        }, "metrics-server");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    // reading the first line of a request, returning what was read if the connection sends nothing more in time
+    private static String readLine(InputStream in) {
+        StringBuilder line = new StringBuilder();
+        try {
+            int character;
+            while (line.length() < MAX_REQUEST && (character = in.read()) >= 0 && character != '\n') {
+                line.append((char) character);
+            }
+        } catch (IOException e) {
+            // a client that sends nothing gets the text snapshot
+        }
+        return line.toString();
+    }
+}
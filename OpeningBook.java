@@ -0,0 +1,162 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// opening book file holding the best move and score for positions near the start of the game, sorted by position hash
+// the file is memory mapped instead of read, so opening it costs nothing and every process using it shares one copy in the page cache
+// file layout: 4 byte magic number, 4 byte entry count, then entries of 8 byte Zobrist hash (with the colour to move), 2 byte score and 1 byte move, sorted by hash
+public class OpeningBook {
+    private static final int MAGIC = 0x52564b42;
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 11;
+
+    private final MappedByteBuffer entries;
+    private final int count;
+
+    // mapping the book file into memory, checking only its header
+    public OpeningBook(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (entries.capacity() < HEADER_SIZE || entries.getInt(0) != MAGIC) {
+            throw new IOException(file + " isn't an opening book");
+        }
+        count = entries.getInt(4);
+        if ((long) count * ENTRY_SIZE + HEADER_SIZE > entries.capacity()) {
+            throw new IOException(file + " is shorter than its entry count");
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // getting the book move for the colour to move on the board, or -1 if the position isn't in the book
+    public int lookup(Board board, char colour) {
+        int index = find(Zobrist.hash(board.getTiles('D'), board.getTiles('L'), colour));
+        if (index < 0) {
+            return -1;
+        }
+        int move = entries.get(HEADER_SIZE + index * ENTRY_SIZE + 10);
+        // the hash could belong to another position, so the move is only used if it is legal here
+        return board.isLegalMove(colour, move) ? move : -1;
+    }
+
+    // getting the book score for the colour to move, in the engine's scoring, or 0 if the position isn't in the book
+    public int score(Board board, char colour) {
+        int index = find(Zobrist.hash(board.getTiles('D'), board.getTiles('L'), colour));
+        return index < 0 ? 0 : entries.getShort(HEADER_SIZE + index * ENTRY_SIZE + 8);
+    }
+
+    // binary searching the sorted entries for the hash, returning its index or -1
+    private int find(long hash) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long entryHash = entries.getLong(HEADER_SIZE + middle * ENTRY_SIZE);
+            if (entryHash < hash) {
+                low = middle + 1;
+            }
+            else if (entryHash > hash) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // building a book by searching every position in the first given number of moves from the Othello opening
+    // each position is searched by the engine, and its best move and score (from the point of view of the colour to move) are stored
+    public static int build(Path file, int moves, AlphaBetaEngine engine) throws IOException {
+        // finding every distinct position first, keyed by hash, along with the colour to move
+        HashMap<Long, Board> positions = new HashMap<Long, Board>();
+        HashMap<Long, Character> colours = new HashMap<Long, Character>();
+        ArrayList<Board> frontier = new ArrayList<Board>();
+        frontier.add(new Board());
+        char colour = 'D';
+        for (int move = 0; move < moves; move++) {
+            ArrayList<Board> next = new ArrayList<Board>();
+            for (Board board : frontier) {
+                long hash = Zobrist.hash(board.getTiles('D'), board.getTiles('L'), colour);
+                if (positions.containsKey(hash)) {
+                    continue;
+                }
+                positions.put(hash, board);
+                colours.put(hash, colour);
+                for (long legal = board.legalMoves(colour); legal != 0; legal &= legal - 1) {
+                    Board child = new Board(board.getTiles('D'), board.getTiles('L'));
+                    child.makeMove(colour, Long.numberOfTrailingZeros(legal));
+                    next.add(child);
+                }
+            }
+            frontier = next;
+            colour = Board.opponent(colour);
+        }
+        // searching every position and storing the results sorted by hash
+        long[] hashes = new long[positions.size()];
+        int index = 0;
+        for (long hash : positions.keySet()) {
+            hashes[index++] = hash;
+        }
+        Arrays.sort(hashes);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(hashes.length);
+            for (int i = 0; i < hashes.length; i++) {
+                Board board = positions.get(hashes[i]);
+                char toMove = colours.get(hashes[i]);
+                int move = engine.selectMove(board, toMove);
+                int score = engine.getLastScore();
+                out.writeLong(hashes[i]);
+                // scores of finished games can be larger than a short, so they are capped
+                out.writeShort(Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)));
+                out.writeByte(move);
+                if ((i + 1) % 1000 == 0) {
+                    System.out.println("searched " + (i + 1) + " of " + hashes.length + " positions");
+                }
+            }
+        }
+        return hashes.length;
+    }
+
+    // main method, for building a book
+    public static void main(String[] args) {
+        if (args.length != 4 || !args[0].equals("build")) {
+            System.err.println("Usage: java OpeningBook build <book file> <moves> <milliseconds per position>");
+            System.exit(1);
+        }
+        try {
+            int moves = Integer.parseInt(args[2]);
+            int time = Integer.parseInt(args[3]);
+            if (moves <= 0 || time <= 0) {
+                throw new NumberFormatException();
+            }
+            Path file = Paths.get(args[1]);
+            int size = build(file, moves, new AlphaBetaEngine(time, 60, 64));
+            System.out.println("wrote " + size + " positions to " + file);
+            // checking the book reads back
+            OpeningBook book = new OpeningBook(file);
+            System.out.println("book move for the opening: " + Board.moveToString(book.lookup(new Board(), 'D')));
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: java OpeningBook build <book file> <moves> <milliseconds per position>");
+            System.err.println("ERROR: moves and milliseconds must be positive integers");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to write opening book");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
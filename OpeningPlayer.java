@@ -0,0 +1,20 @@
+// engine that plays the moves of an opening while the game is in it, and leaves the rest of the game to another engine
+// the number of tiles on the board says how many moves have been made, so the same opening player can be used for every game
+public class OpeningPlayer implements Engine {
+    private final Engine engine;
+    private final int[] opening;
+
+    public OpeningPlayer(Engine engine, int[] opening) {
+        this.engine = engine;
+        this.opening = opening;
+    }
+
+    public int selectMove(Board board, char colour) {
+        int moves = Long.bitCount(~board.getEmpty()) - 4;
+        return moves < opening.length ? opening[moves] : engine.selectMove(board, colour);
+    }
+
+    public void gameOver(Board board, char colour) {
+        engine.gameOver(board, colour);
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// command-line arguments split into positional arguments and options, where options come after the positional arguments
+// an option is --name, followed by its value unless the next argument is another option
+public class Options {
+    private final ArrayList<String> positional = new ArrayList<String>();
+    private final HashMap<String, String> options = new HashMap<String, String>();
+
+    public Options(String[] args) {
+        int i = 0;
+        while (i < args.length && !args[i].startsWith("--")) {
+            positional.add(args[i]);
+            i++;
+        }
+        while (i < args.length) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i] + ", options must come after the other arguments");
+            }
+            String name = args[i].substring(2);
+            i++;
+            if (i < args.length && !args[i].startsWith("--")) {
+                options.put(name, args[i]);
+                i++;
+            }
+            else {
+                options.put(name, "");
+            }
+        }
+    }
+
+    public int positionalCount() {
+        return positional.size();
+    }
+
+    public String positional(int index) {
+        return positional.get(index);
+    }
+
+    public boolean has(String name) {
+        return options.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    // getting a positive integer option, throwing a number format exception if it isn't one
+    public int getInt(String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        int number = Integer.parseInt(value);
+        if (number <= 0) {
+            throw new NumberFormatException("--" + name + " must be a positive integer");
+        }
+        return number;
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// evaluation from patterns of squares along the edges, around the corners, and on the diagonals and lines of the board
+// each pattern is placed on the board in every way the board's symmetries allow, and every placement reads its squares as a base 3 number
+// (0 for empty, 1 for dark, 2 for light), which indexes a table of weights shared by the placements of that pattern
+// the indexes are kept up to date as tiles are placed and flipped, by adding each changed square's power of 3, so evaluating a position
+// is one table lookup per placement instead of looking at every square
+// the weights are in hundredths of a tile of final tile difference for darks, with separate tables for each stage of the game, and are
+// loaded from a weight file made by the tuner
+// file layout: 4 byte magic number, 4 byte stage count, 4 byte pattern count, 4 byte size of each pattern, then the weights as 2 byte numbers,
+// stage by stage and pattern by pattern
+public class PatternEval {
+    private static final int MAGIC = 0x52565057;
+    // stages of the game by number of tiles on the board, each with its own weights
+    public static final int STAGES = 6;
+    // patterns as their squares in one corner of the board, where the first square is the lowest digit of the index
+    private static final int[][] PATTERNS = {
+        // the top edge with the squares diagonal to its corners
+        {0, 1, 2, 3, 4, 5, 6, 7, 9, 14},
+        // the 3 by 3 corner
+        {0, 1, 2, 8, 9, 10, 16, 17, 18},
+        // the 2 by 5 corner
+        {0, 1, 2, 3, 4, 8, 9, 10, 11, 12},
+        // the diagonals, from the longest to the shortest worth having
+        {0, 9, 18, 27, 36, 45, 54, 63},
+        {1, 10, 19, 28, 37, 46, 55},
+        {2, 11, 20, 29, 38, 47},
+        {3, 12, 21, 30, 39},
+        {4, 13, 22, 31},
+        // the second, third and fourth rows
+        {8, 9, 10, 11, 12, 13, 14, 15},
+        {16, 17, 18, 19, 20, 21, 22, 23},
+        {24, 25, 26, 27, 28, 29, 30, 31},
+    };
+    private static final int[] POWERS_OF_3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561, 19683, 59049};
+
+    // number of weights in each stage, and where each pattern's weights start within a stage
+    public static final int STAGE_SIZE;
+    private static final int[] PATTERN_OFFSETS = new int[PATTERNS.length];
+    // every placement of every pattern, as its squares and where its pattern's weights start
+    public static final int PLACEMENTS;
+    private static final int[][] PLACEMENT_SQUARES;
+    private static final int[] PLACEMENT_OFFSETS;
+    // for each square, the placements it is in and its power of 3 in each of them, used to update the indexes
+    private static final int[][] SQUARE_PLACEMENTS = new int[64][];
+    private static final int[][] SQUARE_POWERS = new int[64][];
+
+    static {
+        int size = 0;
+        ArrayList<int[]> placements = new ArrayList<int[]>();
+        ArrayList<Integer> offsets = new ArrayList<Integer>();
+        for (int pattern = 0; pattern < PATTERNS.length; pattern++) {
+            PATTERN_OFFSETS[pattern] = size;
+            size += POWERS_OF_3[PATTERNS[pattern].length];
+            // placing the pattern with each of the 8 symmetries, leaving out placements that cover the same squares as an earlier one
+            ArrayList<int[]> covered = new ArrayList<int[]>();
+            for (int symmetry = 0; symmetry < 8; symmetry++) {
+                int[] squares = new int[PATTERNS[pattern].length];
+                for (int i = 0; i < squares.length; i++) {
+                    squares[i] = transform(PATTERNS[pattern][i], symmetry);
+                }
+                int[] sorted = squares.clone();
+                Arrays.sort(sorted);
+                boolean seen = false;
+                for (int[] other : covered) {
+                    seen |= Arrays.equals(other, sorted);
+                }
+                if (!seen) {
+                    covered.add(sorted);
+                    placements.add(squares);
+                    offsets.add(PATTERN_OFFSETS[pattern]);
+                }
+            }
+        }
+        STAGE_SIZE = size;
+        PLACEMENTS = placements.size();
+        PLACEMENT_SQUARES = placements.toArray(new int[PLACEMENTS][]);
+        PLACEMENT_OFFSETS = new int[PLACEMENTS];
+        int[] counts = new int[64];
+        for (int placement = 0; placement < PLACEMENTS; placement++) {
+            PLACEMENT_OFFSETS[placement] = offsets.get(placement);
+            for (int square : PLACEMENT_SQUARES[placement]) {
+                counts[square]++;
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            SQUARE_PLACEMENTS[square] = new int[counts[square]];
+            SQUARE_POWERS[square] = new int[counts[square]];
+            counts[square] = 0;
+        }
+        for (int placement = 0; placement < PLACEMENTS; placement++) {
+            int[] squares = PLACEMENT_SQUARES[placement];
+            for (int i = 0; i < squares.length; i++) {
+                int square = squares[i];
+                SQUARE_PLACEMENTS[square][counts[square]] = placement;
+                SQUARE_POWERS[square][counts[square]] = POWERS_OF_3[i];
+                counts[square]++;
+            }
+        }
+    }
+
+    private final short[] weights;
+
+    // loading the weights from a weight file, checking that it was made for these patterns
+    public PatternEval(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int headerSize = 12 + 4 * PATTERNS.length;
+            long expectedSize = headerSize + 2L * STAGES * STAGE_SIZE;
+            if (channel.size() != expectedSize) {
+                throw new IOException(file + " isn't a pattern weight file for these patterns");
+            }
+            buffer = ByteBuffer.allocate((int) expectedSize);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // reading until the buffer is full
+            }
+        }
+        buffer.flip();
+        boolean matches = buffer.getInt() == MAGIC && buffer.getInt() == STAGES && buffer.getInt() == PATTERNS.length;
+        for (int[] pattern : PATTERNS) {
+            matches &= buffer.getInt() == pattern.length;
+        }
+        if (!matches) {
+            throw new IOException(file + " isn't a pattern weight file for these patterns");
+        }
+        weights = new short[STAGES * STAGE_SIZE];
+        buffer.asShortBuffer().get(weights);
+    }
+
+    // using the given weights, which are laid out as in the weight file
+    public PatternEval(short[] weights) {
+        if (weights.length != STAGES * STAGE_SIZE) {
+            throw new IllegalArgumentException("expected " + STAGES * STAGE_SIZE + " weights, found " + weights.length);
+        }
+        this.weights = weights;
+    }
+
+    // writing weights to a weight file
+    public static void write(Path file, short[] weights) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(STAGES);
+            out.writeInt(PATTERNS.length);
+            for (int[] pattern : PATTERNS) {
+                out.writeInt(pattern.length);
+            }
+            for (short weight : weights) {
+                out.writeShort(weight);
+            }
+        }
+    }
+
+    // getting the stage of the game for the number of tiles on the board
+    public static int stage(int tiles) {
+        return (tiles - 4) * STAGES / 61;
+    }
+
+    // getting where the weight for a placement's index is, within its stage
+    public static int weightIndex(int placement, int index) {
+        return PLACEMENT_OFFSETS[placement] + index;
+    }
+
+    // working out the index of every placement from scratch, by adding the digit of every tile on the board to its placements
+    public static void indexes(long dark, long light, int[] indexes) {
+        Arrays.fill(indexes, 0);
+        for (; dark != 0; dark &= dark - 1) {
+            int square = Long.numberOfTrailingZeros(dark);
+            int[] placements = SQUARE_PLACEMENTS[square];
+            int[] powers = SQUARE_POWERS[square];
+            for (int i = 0; i < placements.length; i++) {
+                indexes[placements[i]] += powers[i];
+            }
+        }
+        for (; light != 0; light &= light - 1) {
+            int square = Long.numberOfTrailingZeros(light);
+            int[] placements = SQUARE_PLACEMENTS[square];
+            int[] powers = SQUARE_POWERS[square];
+            for (int i = 0; i < placements.length; i++) {
+                indexes[placements[i]] += 2 * powers[i];
+            }
+        }
+    }
+
+    // updating the indexes for the colour placing a tile on the square and flipping the given tiles
+    public static void play(int[] indexes, char colour, int square, long flipped) {
+        int digit = colour == 'D' ? 1 : 2;
+        int[] placements = SQUARE_PLACEMENTS[square];
+        int[] powers = SQUARE_POWERS[square];
+        for (int i = 0; i < placements.length; i++) {
+            indexes[placements[i]] += digit * powers[i];
+        }
+        // a flipped light tile goes from 2 to 1 and a flipped dark tile from 1 to 2
+        int change = colour == 'D' ? -1 : 1;
+        for (; flipped != 0; flipped &= flipped - 1) {
+            int flip = Long.numberOfTrailingZeros(flipped);
+            placements = SQUARE_PLACEMENTS[flip];
+            powers = SQUARE_POWERS[flip];
+            for (int i = 0; i < placements.length; i++) {
+                indexes[placements[i]] += change * powers[i];
+            }
+        }
+    }
+
+    // evaluating a position from its indexes and number of tiles, in hundredths of a tile for the given colour
+    public int evaluate(int[] indexes, int tiles, char colour) {
+        int base = stage(tiles) * STAGE_SIZE;
+        int score = 0;
+        for (int placement = 0; placement < PLACEMENTS; placement++) {
+            score += weights[base + PLACEMENT_OFFSETS[placement] + indexes[placement]];
+        }
+        return colour == 'D' ? score : -score;
+    }
+
+    // moving a square of the top left corner to where a symmetry of the board takes it, as a flip of the rows, the columns or the diagonal
+    private static int transform(int square, int symmetry) {
+        int row = square / 8;
+        int column = square % 8;
+        if ((symmetry & 1) != 0) {
+            row = 7 - row;
+        }
+        if ((symmetry & 2) != 0) {
+            column = 7 - column;
+        }
+        if ((symmetry & 4) != 0) {
+            int swap = row;
+            row = column;
+            column = swap;
+        }
+        return row * 8 + column;
+    }
+}
@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Random;
+
+// pool of TCP gameplay listeners on one address, handing out ports from a range (9000 to 9100 by default) that are already bound,
+// so the port told to a peer is always one that accepts its connection
+// the ports in use are kept as a bitset, so finding a free one is a scan of a few words instead of binding random ports until one works,
+// and ports found to be in use by another process are remembered and skipped until every other port is taken
+// a released listener is kept open and handed out again, instead of closing it and binding a new socket to the next port
+// listeners are non-blocking, and the allocator can be shared by matches on several threads
+public class PortAllocator {
+    // range of gameplay ports every peer accepts in offers
+    public static final int MIN_GAMEPLAY_PORT = 9000;
+    public static final int MAX_GAMEPLAY_PORT = 9100;
+
+    private final InetAddress address;
+    private final int firstPort;
+    private final int size;
+    // ports that can't be handed out, by offset from the first port, which are the ports bound by this allocator (whether handed out
+    // or waiting to be reused) and the ports another process was bound to when last tried
+    private final BitSet used;
+    private final BitSet unavailable;
+    // released listeners that are still bound and can be handed out again
+    private final ArrayDeque<ServerSocketChannel> idle = new ArrayDeque<ServerSocketChannel>();
+    // offset to search for a free port from, which starts at a random port so processes on one host don't all try the same ports first
+    private int next;
+
+    public PortAllocator(InetAddress address) {
+        this(address, MIN_GAMEPLAY_PORT, MAX_GAMEPLAY_PORT);
+    }
+
+    // allocating ports from firstPort to lastPort (inclusive) on the given address
+    public PortAllocator(InetAddress address, int firstPort, int lastPort) {
+        if (firstPort > lastPort || firstPort <= 0 || lastPort > 65535) {
+            throw new IllegalArgumentException("Invalid port range " + firstPort + " to " + lastPort);
+        }
+        this.address = address;
+        this.firstPort = firstPort;
+        size = lastPort - firstPort + 1;
+        used = new BitSet(size);
+        unavailable = new BitSet(size);
+        next = new Random().nextInt(size);
+    }
+
+    public InetAddress getAddress() {
+        return address;
+    }
+
+    // getting a non-blocking listener bound to a port in the range, reusing a released one if there is one
+    // throws a BindException if every port in the range is bound
+    public synchronized ServerSocketChannel acquire() throws IOException {
+        ServerSocketChannel listener = idle.pollFirst();
+        if (listener != null) {
+            // dropping connections to the listener's last match that were never accepted
+            SocketChannel stale;
+            while ((stale = listener.accept()) != null) {
+                stale.close();
+            }
+            return listener;
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            while (true) {
+                // finding the first free port from where the last search stopped, wrapping around to the start of the range
+                int offset = used.nextClearBit(next);
+                if (offset >= size) {
+                    offset = used.nextClearBit(0);
+                    if (offset >= size) {
+                        break;
+                    }
+                }
+                next = (offset + 1) % size;
+                used.set(offset);
+                listener = ServerSocketChannel.open();
+                try {
+                    listener.bind(new InetSocketAddress(address, firstPort + offset));
+                    listener.configureBlocking(false);
+                    return listener;
+                } catch (BindException e) {
+                    // another process has the port, so it is skipped until the other ports run out
+                    listener.close();
+                    unavailable.set(offset);
+                } catch (IOException e) {
+                    // giving the port back so a later call can try it again
+                    listener.close();
+                    used.clear(offset);
+                    throw e;
+                }
+            }
+            // every port this allocator doesn't hold was in use, so they are tried once more in case another process has let go of one
+            used.andNot(unavailable);
+            unavailable.clear();
+        }
+        throw new BindException("No free gameplay port between " + firstPort + " and " + (firstPort + size - 1));
+    }
+
+    // handing a listener back once its match has its connection, keeping it open so the next match can reuse it
+    public synchronized void release(ServerSocketChannel listener) {
+        if (!listener.isOpen()) {
+            free(listener);
+            return;
+        }
+        idle.addLast(listener);
+    }
+
+    // closing a listener for good, freeing its port
+    public synchronized void close(ServerSocketChannel listener) throws IOException {
+        idle.remove(listener);
+        free(listener);
+        listener.close();
+    }
+
+    // closing every released listener
+    public synchronized void close() throws IOException {
+        while (!idle.isEmpty()) {
+            ServerSocketChannel listener = idle.pollFirst();
+            free(listener);
+            listener.close();
+        }
+    }
+
+    // getting how many ports this allocator has bound, including released listeners waiting to be reused
+    public synchronized int boundCount() {
+        return used.cardinality() - unavailable.cardinality();
+    }
+
+    private void free(ServerSocketChannel listener) {
+        // the port is still known after the listener is closed
+        int port = listener.socket().getLocalPort();
+        if (port >= firstPort && port < firstPort + size) {
+            used.clear(port - firstPort);
+        }
+    }
+}
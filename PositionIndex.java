@@ -0,0 +1,400 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// on-disk index of the positions reached in the games of a game log, for finding every game that passed through a position
+// positions are keyed by Zobrist.canonicalHash, so a position is found whichever way round the board was when it was reached
+// the index directory holds two files:
+//   positions.idx: 64 byte header, then an open addressing hash table of 32 byte slots, which is memory mapped so a lookup is one
+//     or two reads of the page cache; each slot holds the position's hash, the offset of its newest posting, and how many of its
+//     games darks won, lights won, were drawn and ended with an error
+//   postings.dat: 16 byte header, then 16 byte postings, each holding a game's reference in the log and a link to the position's
+//     previous posting (with the game's result in its top 2 bits), so a position's games are a list from newest to oldest
+// the header records how far through the log has been indexed, so updating the index only reads the games recorded since
+public class PositionIndex implements AutoCloseable {
+    static final String TABLE_FILE = "positions.idx";
+    static final String POSTINGS_FILE = "postings.dat";
+    private static final int TABLE_MAGIC = 0x52565049;
+    private static final int POSTINGS_MAGIC = 0x52565047;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 32;
+    // slots are mapped in chunks, as one mapping can't be more than 2GB
+    private static final int CHUNK_SLOTS_LOG = 25;
+    private static final int POSTINGS_HEADER_SIZE = 16;
+    private static final int POSTING_SIZE = 16;
+    private static final int MIN_CAPACITY_LOG = 10;
+    private static final int MAX_CAPACITY_LOG = 34;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final String USAGE = "Usage: java PositionIndex update <index directory> <log directory> [--capacity <positions>]\n"
+            + "       java PositionIndex query <index directory> <log directory> [<row,column> ...] [--games <count>]";
+
+    // header fields
+    private static final int CAPACITY_LOG_FIELD = 4;
+    private static final int COUNT_FIELD = 8;
+    private static final int LOG_SEGMENT_FIELD = 16;
+    private static final int LOG_OFFSET_FIELD = 24;
+    private static final int GAMES_FIELD = 32;
+    // slot fields
+    private static final int HEAD_FIELD = 8;
+    private static final int RESULTS_FIELD = 16;
+
+    private final Path directory;
+    private FileChannel tableChannel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] chunks;
+    private int capacityLog;
+    private long mask;
+    private long count;
+    private final FileChannel postings;
+    private long postingsSize;
+    // postings waiting to be written to the end of the postings file
+    private final ByteBuffer pending = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(POSTING_SIZE);
+
+    // opening the index in the directory, creating it with room for about the given number of positions if it doesn't exist
+    // the table doubles when it gets three quarters full, so the capacity only saves the time of growing it
+    public PositionIndex(Path directory, long capacity) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path tableFile = directory.resolve(TABLE_FILE);
+        if (!Files.exists(tableFile)) {
+            int log = MIN_CAPACITY_LOG;
+            while (log < MAX_CAPACITY_LOG && (1L << log) * 3 / 4 < capacity) {
+                log++;
+            }
+            createTable(tableFile, log);
+        }
+        openTable(tableFile);
+        postings = FileChannel.open(directory.resolve(POSTINGS_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        postingsSize = postings.size();
+        if (postingsSize == 0) {
+            ByteBuffer postingsHeader = ByteBuffer.allocate(POSTINGS_HEADER_SIZE);
+            postingsHeader.putInt(POSTINGS_MAGIC);
+            postingsHeader.flip();
+            postings.write(postingsHeader, 0);
+            postingsSize = POSTINGS_HEADER_SIZE;
+        }
+        else {
+            readBuffer.clear();
+            postings.read(readBuffer, 0);
+            if (readBuffer.getInt(0) != POSTINGS_MAGIC) {
+                throw new IOException(directory.resolve(POSTINGS_FILE) + " isn't a postings file");
+            }
+            // a posting cut off part way through by a crash is written over
+            postingsSize = POSTINGS_HEADER_SIZE + (postingsSize - POSTINGS_HEADER_SIZE) / POSTING_SIZE * POSTING_SIZE;
+        }
+    }
+
+    private static void createTable(Path file, int capacityLog) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer tableHeader = ByteBuffer.allocate(HEADER_SIZE);
+            tableHeader.putInt(0, TABLE_MAGIC);
+            tableHeader.putInt(CAPACITY_LOG_FIELD, capacityLog);
+            channel.write(tableHeader, 0);
+            // making the file its full size, which is sparse until slots are used
+            channel.write(ByteBuffer.allocate(1), HEADER_SIZE + ((long) SLOT_SIZE << capacityLog) - 1);
+        }
+    }
+
+    private void openTable(Path file) throws IOException {
+        tableChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = tableChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (header.getInt(0) != TABLE_MAGIC) {
+            throw new IOException(file + " isn't a position index");
+        }
+        capacityLog = header.getInt(CAPACITY_LOG_FIELD);
+        if (capacityLog < MIN_CAPACITY_LOG || capacityLog > MAX_CAPACITY_LOG
+                || tableChannel.size() < HEADER_SIZE + ((long) SLOT_SIZE << capacityLog)) {
+            throw new IOException(file + " is shorter than its table");
+        }
+        mask = (1L << capacityLog) - 1;
+        count = header.getLong(COUNT_FIELD);
+        int chunkSlotsLog = Math.min(capacityLog, CHUNK_SLOTS_LOG);
+        chunks = new MappedByteBuffer[1 << (capacityLog - chunkSlotsLog)];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = tableChannel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + ((long) i << chunkSlotsLog) * SLOT_SIZE,
+                    (long) SLOT_SIZE << chunkSlotsLog);
+        }
+    }
+
+    // getting how many distinct positions are indexed
+    public long size() {
+        return count;
+    }
+
+    // getting how many games are indexed
+    public long games() {
+        return header.getLong(GAMES_FIELD);
+    }
+
+    // indexing every game in the log recorded since the last update, returning how many games were indexed
+    // games whose moves don't replay are skipped, as the game log reader reports them
+    public long update(Path logDirectory) throws IOException {
+        long indexed = 0;
+        try (GameLogReader reader = new GameLogReader(logDirectory, header.getInt(LOG_SEGMENT_FIELD), header.getLong(LOG_OFFSET_FIELD))) {
+            GameRecord record;
+            while ((record = reader.next()) != null) {
+                if (add(record, reader.getReference())) {
+                    indexed++;
+                }
+                header.putInt(LOG_SEGMENT_FIELD, reader.getSegmentNumber());
+                header.putLong(LOG_OFFSET_FIELD, reader.getOffset());
+            }
+        }
+        save();
+        return indexed;
+    }
+
+    // indexing every position reached in the game, returning false if the game's moves don't replay
+    public boolean add(GameRecord record, long reference) throws IOException {
+        // the moves are checked before anything is indexed, so a bad record adds nothing
+        try {
+            record.replay();
+        } catch (IllegalStateException e) {
+            return false;
+        }
+        Board board = new Board();
+        char colour = 'D';
+        for (int i = 0; i < record.getMoveCount(); i++) {
+            if (board.legalMoves(colour) == 0) {
+                colour = Board.opponent(colour);
+            }
+            board.makeMove(colour, record.getMove(i));
+            colour = Board.opponent(colour);
+            addPosting(Zobrist.canonicalHash(board.getTiles('D'), board.getTiles('L')), reference, record.getResult());
+        }
+        header.putLong(GAMES_FIELD, header.getLong(GAMES_FIELD) + 1);
+        return true;
+    }
+
+    private void addPosting(long key, long reference, int result) throws IOException {
+        long slot = find(key);
+        if (head(slot) == 0) {
+            if ((count + 1) * 4 > (mask + 1) * 3) {
+                grow();
+                slot = find(key);
+            }
+            count++;
+            chunk(slot).putLong(slotOffset(slot), key);
+        }
+        if (!pending.hasRemaining()) {
+            flushPostings();
+        }
+        long posting = postingsSize + pending.position();
+        pending.putLong(reference);
+        pending.putLong(((long) result << 62) | head(slot));
+        ByteBuffer chunk = chunk(slot);
+        int offset = slotOffset(slot);
+        chunk.putLong(offset + HEAD_FIELD, posting);
+        int resultField = offset + RESULTS_FIELD + result * 4;
+        chunk.putInt(resultField, chunk.getInt(resultField) + 1);
+    }
+
+    // getting the slot holding the key, or the empty slot where it would go
+    private long find(long key) {
+        long slot = key & mask;
+        while (true) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = slotOffset(slot);
+            if (chunk.getLong(offset + HEAD_FIELD) == 0 || chunk.getLong(offset) == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private ByteBuffer chunk(long slot) {
+        return chunks[(int) (slot >>> CHUNK_SLOTS_LOG)];
+    }
+
+    private static int slotOffset(long slot) {
+        return (int) (slot & ((1 << CHUNK_SLOTS_LOG) - 1)) * SLOT_SIZE;
+    }
+
+    private long head(long slot) {
+        return chunk(slot).getLong(slotOffset(slot) + HEAD_FIELD);
+    }
+
+    // doubling the table, copying every slot into a new table file which then replaces the old one
+    private void grow() throws IOException {
+        Path tableFile = directory.resolve(TABLE_FILE);
+        Path grownFile = directory.resolve(TABLE_FILE + ".new");
+        Files.deleteIfExists(grownFile);
+        createTable(grownFile, capacityLog + 1);
+        MappedByteBuffer[] oldChunks = chunks;
+        long oldCapacity = mask + 1;
+        ByteBuffer oldHeader = header;
+        FileChannel oldChannel = tableChannel;
+        long oldCount = count;
+        openTable(grownFile);
+        // carrying over the log position and game count, which come after the magic number and capacity
+        for (int i = COUNT_FIELD; i < HEADER_SIZE; i += 8) {
+            header.putLong(i, oldHeader.getLong(i));
+        }
+        count = oldCount;
+        byte[] slotBytes = new byte[SLOT_SIZE];
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            ByteBuffer oldChunk = oldChunks[(int) (slot >>> CHUNK_SLOTS_LOG)];
+            int offset = slotOffset(slot);
+            if (oldChunk.getLong(offset + HEAD_FIELD) == 0) {
+                continue;
+            }
+            long newSlot = find(oldChunk.getLong(offset));
+            oldChunk.position(offset);
+            oldChunk.get(slotBytes);
+            ByteBuffer chunk = chunk(newSlot);
+            chunk.position(slotOffset(newSlot));
+            chunk.put(slotBytes);
+        }
+        oldChannel.close();
+        save();
+        Files.move(grownFile, tableFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void flushPostings() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            postingsSize += postings.write(pending, postingsSize);
+        }
+        pending.clear();
+    }
+
+    // writing the postings and then the table to disk, which update does once it has read the log
+    // the table is memory mapped, so a crash part way through an update can leave it out of step with the postings, and the index
+    // is then rebuilt by deleting it and updating again
+    public void save() throws IOException {
+        flushPostings();
+        postings.force(false);
+        header.putLong(COUNT_FIELD, count);
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        header.force();
+    }
+
+    // getting how many games reached the position (in any rotation or reflection) with each result, indexed by the GameRecord results
+    public int[] results(Board board) {
+        int[] results = new int[4];
+        long slot = find(Zobrist.canonicalHash(board.getTiles('D'), board.getTiles('L')));
+        if (head(slot) != 0) {
+            ByteBuffer chunk = chunk(slot);
+            for (int result = 0; result < 4; result++) {
+                results[result] = chunk.getInt(slotOffset(slot) + RESULTS_FIELD + result * 4);
+            }
+        }
+        return results;
+    }
+
+    // getting the log references of up to limit games that reached the position, newest first
+    public long[] games(Board board, int limit) throws IOException {
+        flushPostings();
+        long slot = find(Zobrist.canonicalHash(board.getTiles('D'), board.getTiles('L')));
+        long posting = head(slot);
+        long[] found = new long[limit];
+        int size = 0;
+        while (posting != 0 && size < limit) {
+            readBuffer.clear();
+            postings.read(readBuffer, posting);
+            found[size++] = readBuffer.getLong(0);
+            posting = readBuffer.getLong(8) & ~(3L << 62);
+        }
+        long[] games = new long[size];
+        System.arraycopy(found, 0, games, 0, size);
+        return games;
+    }
+
+    public void close() throws IOException {
+        save();
+        postings.close();
+        tableChannel.close();
+    }
+
+    // main method, for updating the index from a game log or looking up the position reached by a list of moves
+    public static void main(String[] args) {
+        Options options = null;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        if (options.positionalCount() < 3 || !(options.positional(0).equals("update") || options.positional(0).equals("query"))
+                || (options.positional(0).equals("update") && options.positionalCount() != 3)) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        Path logDirectory = Paths.get(options.positional(2));
+        try (PositionIndex index = new PositionIndex(Paths.get(options.positional(1)), options.getInt("capacity", 1 << 20))) {
+            if (options.positional(0).equals("update")) {
+                long start = System.nanoTime();
+                long indexed = index.update(logDirectory);
+                System.out.println("indexed " + indexed + " games in " + (System.nanoTime() - start) / 1000000 + "ms, " + index.games()
+                    + " games and " + index.size() + " positions in the index");
+                return;
+            }
+            // playing the moves from the opening, passing for a player without a legal move
+            Board board = new Board();
+            char colour = 'D';
+            for (int i = 3; i < options.positionalCount(); i++) {
+                int move = Board.parseMove(options.positional(i), 0);
+                if (board.legalMoves(colour) == 0) {
+                    colour = Board.opponent(colour);
+                }
+                if (move < 0 || !board.isLegalMove(colour, move)) {
+                    System.err.println("ERROR: " + options.positional(i) + " isn't a legal move");
+                    System.exit(1);
+                }
+                board.makeMove(colour, move);
+                colour = Board.opponent(colour);
+            }
+            long canonical = Zobrist.canonicalHash(board.getTiles('D'), board.getTiles('L'));
+            long start = System.nanoTime();
+            int[] results = index.results(board);
+            long lookupTime = System.nanoTime() - start;
+            int total = results[0] + results[1] + results[2] + results[3];
+            System.out.println("position reached in " + total + " games: " + results[GameRecord.DARK_WIN] + " darks wins, "
+                + results[GameRecord.LIGHT_WIN] + " lights wins, " + results[GameRecord.DRAW] + " draws, " + results[GameRecord.ERROR]
+                + " errors (lookup took " + lookupTime / 1000 + " microseconds)");
+            for (long reference : index.games(board, options.getInt("games", 10))) {
+                GameRecord record = GameLogReader.read(logDirectory, reference);
+                // the hash could belong to another position, so the game is only listed if replaying it reaches the position
+                if (reaches(record, canonical)) {
+                    System.out.println(record.getDarkPlayer() + " (D) vs " + record.getLightPlayer() + " (L): "
+                        + GameRecord.resultName(record.getResult()) + ", game " + Long.toHexString(reference));
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: --capacity and --games must be positive integers");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to read or write position index");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // checking whether replaying the game reaches the position with the given canonical hash
+    private static boolean reaches(GameRecord record, long canonical) {
+        Board board = new Board();
+        char colour = 'D';
+        for (int i = 0; i < record.getMoveCount(); i++) {
+            if (board.legalMoves(colour) == 0) {
+                colour = Board.opponent(colour);
+            }
+            board.makeMove(colour, record.getMove(i));
+            colour = Board.opponent(colour);
+            if (Zobrist.canonicalHash(board.getTiles('D'), board.getTiles('L')) == canonical) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// computer player that is another program, such as another build of this one run as java Reversi --stdio, which plays local games
+// with the text lines of the game protocol (MOVE:<row>,<column>, PASS and the results) over its standard input and output
+// the program writes READY whenever it can start a game, and is then sent NEW GAME <colour> <moves>, with the colour it plays and
+// the moves made before it was first asked for one (such as an opening), which it plays as its own moves when they are its turn
+// after that the moves and passes of both sides are sent as in a network game, where the second player to pass sends the result
+// one program plays every game of the engine it was started for, so it only starts up once however many games are played
+// a game must be played from the opening, as what the program is sent comes from the board's undo stack
+public class ProcessEngine implements Engine {
+    private final String command;
+    private final Process process;
+    private final BufferedReader in;
+    private final Writer out;
+    // entries of the board's undo stack the program has been told about or has sent, or -1 when it isn't playing a game
+    private int known = -1;
+
+    // starting the program, given as a command line of words separated by spaces
+    public ProcessEngine(String command) throws IOException {
+        this.command = command;
+        process = new ProcessBuilder(command.trim().split("\\s+")).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII));
+        out = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.US_ASCII));
+    }
+
+    // telling the program what happened since its last move and getting its next one, throwing an IllegalStateException if the program
+    // fails or breaks the rules
+    public int selectMove(Board board, char colour) {
+        try {
+            catchUp(board, colour);
+            int move = receive();
+            if (move == Board.PASS || !board.isLegalMove(colour, move)) {
+                throw new IllegalStateException(command + " made an illegal move");
+            }
+            // the move is about to go on the undo stack
+            known = board.getUndoCount() + 1;
+            return move;
+        } catch (IOException e) {
+            throw new IllegalStateException(command + " stopped playing", e);
+        }
+    }
+
+    // finishing the game with the program, where the last entry on the undo stack is the first of the two passes that end it, so the
+    // program sends the result if its opponent passed first and is sent it otherwise
+    public void gameOver(Board board, char colour) {
+        try {
+            catchUp(board, colour);
+            if (board.getUndoColour(board.getUndoCount() - 1) == colour) {
+                int difference = board.countTiles(colour) - board.countTiles(Board.opponent(colour));
+                send(difference > 0 ? "YOU WIN" : difference < 0 ? "YOU LOSE" : "DRAW");
+                out.flush();
+            }
+            else {
+                int result = receive();
+                if (result != GameConnection.YOU_WIN && result != GameConnection.YOU_LOSE && result != GameConnection.DRAW) {
+                    throw new IllegalStateException(command + " didn't end the game");
+                }
+            }
+            known = -1;
+        } catch (IOException e) {
+            throw new IllegalStateException(command + " stopped playing", e);
+        }
+    }
+
+    // closing the program's input and stopping it, rather than waiting for it to notice its input has closed
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // the program has already stopped reading
+        }
+        process.destroy();
+    }
+
+    // starting a game with the program if there isn't one, then sending the opponent's moves and passes since the last exchange and
+    // reading the program's own, which are the moves it was given when the game started and its passes
+    private void catchUp(Board board, char colour) throws IOException {
+        int count = board.getUndoCount();
+        if (known < 0) {
+            String line;
+            while ((line = in.readLine()) != null && !line.equals("READY")) {
+                // skipping anything the program writes before it is ready
+            }
+            if (line == null) {
+                throw new IOException(command + " exited");
+            }
+            StringBuilder start = new StringBuilder("NEW GAME ").append(colour);
+            for (int i = 0; i < count; i++) {
+                if (board.getUndoSquare(i) != Board.PASS) {
+                    start.append(' ').append(Board.moveToString(board.getUndoSquare(i)));
+                }
+            }
+            send(start.toString());
+            known = 0;
+        }
+        for (int i = known; i < count; i++) {
+            int square = board.getUndoSquare(i);
+            if (board.getUndoColour(i) == colour) {
+                if (receive() != square) {
+                    throw new IllegalStateException(command + " didn't play the moves it was given");
+                }
+            }
+            else {
+                send(square == Board.PASS ? "PASS" : "MOVE:" + Board.moveToString(square));
+            }
+        }
+        known = count;
+    }
+
+    private void send(String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+    }
+
+    // sending everything written so far and reading the program's next message, as a square, Board.PASS or a GameConnection result,
+    // skipping lines that aren't messages (like the offer of the binary form, which is never accepted)
+    private int receive() throws IOException {
+        out.flush();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("MOVE:") && Board.parseMove(line, 5) >= 0) {
+                return Board.parseMove(line, 5);
+            }
+            else if (line.equals("PASS")) {
+                return Board.PASS;
+            }
+            else if (line.equals("YOU WIN")) {
+                return GameConnection.YOU_WIN;
+            }
+            else if (line.equals("YOU LOSE")) {
+                return GameConnection.YOU_LOSE;
+            }
+            else if (line.equals("DRAW")) {
+                return GameConnection.DRAW;
+            }
+            else if (line.equals("ERROR")) {
+                throw new IllegalStateException(command + " ended the game with an error");
+            }
+        }
+        throw new IOException(command + " exited");
+    }
+}
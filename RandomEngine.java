@@ -0,0 +1,23 @@
+import java.util.Random;
+
+// computer player that picks one of its legal moves at random
+public class RandomEngine implements Engine {
+    private final Random random;
+
+    public RandomEngine() {
+        random = new Random();
+    }
+
+    public RandomEngine(long seed) {
+        random = new Random(seed);
+    }
+
+    public int selectMove(Board board, char colour) {
+        long moves = board.legalMoves(colour);
+        // skipping a random number of the set bits to get a random move
+        for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+}
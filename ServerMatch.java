@@ -0,0 +1,145 @@
+// one match hosted by the game server, where the server plays an engine against a connected client
+// a client that connects to a gameplay port plays lights, so the server plays darks and moves first, exactly like the player 1 client would
+// the match only deals with protocol messages, so it doesn't care whether they are sent as text or binary
+public class ServerMatch {
+    private static final char SERVER_COLOUR = 'D';
+    private static final char CLIENT_COLOUR = 'L';
+    // returned by receive when there is nothing to send back
+    public static final int NO_REPLY = -1;
+
+    private final Board board = new Board();
+    private final Engine engine;
+    private boolean finished = false;
+    // result of the match from the client's point of view (YOU WIN, YOU LOSE, DRAW or ERROR), or null while it is being played
+    private String result = null;
+    private boolean adjudicated = false;
+    // moves, passes and timings of the match, for its record in the game log
+    private final GameRecord.Recorder recorder = new GameRecord.Recorder();
+    // where the moves are shown to spectators, or null if the match isn't broadcast
+    private SpectatorHub.Broadcast broadcast = null;
+
+    public ServerMatch(Engine engine) {
+        this.engine = engine;
+    }
+
+    // showing the match's moves to spectators from now on, where whoever hosts the match publishes its result
+    public void setBroadcast(SpectatorHub.Broadcast broadcast) {
+        this.broadcast = broadcast;
+    }
+
+    // getting the message to send once the client connects, which is the first move of the match
+    public int start() {
+        return serverTurn(false);
+    }
+
+    // handling a message received from the client, returning the message to send back or NO_REPLY if there is nothing to send
+    public int receive(int message) {
+        if (finished) {
+            return NO_REPLY;
+        }
+        if (message == GameConnection.PASS) {
+            // client can only pass if it has no possible moves
+            if (board.legalMoves(CLIENT_COLOUR) != 0) {
+                Metrics.GAMES_ILLEGAL_MOVE.increment();
+                return finish(GameConnection.ERROR);
+            }
+            recorder.pass(CLIENT_COLOUR);
+            if (broadcast != null) {
+                broadcast.pass(CLIENT_COLOUR);
+            }
+            return serverTurn(true);
+        }
+        // client has ended the match, either with the result or because of an error
+        if (message == GameConnection.YOU_WIN || message == GameConnection.YOU_LOSE || message == GameConnection.DRAW || message == GameConnection.ERROR) {
+            // client sends the result from the server's point of view, so it is swapped to store it from the client's
+            (message == GameConnection.ERROR ? Metrics.GAMES_OPPONENT_ERROR : Metrics.GAMES_FINISHED).increment();
+            finish(GameConnection.swapResult(message));
+            return NO_REPLY;
+        }
+        // checking if move made by client is valid and if not send error and finish the match
+        if (!board.isLegalMove(CLIENT_COLOUR, message)) {
+            Metrics.GAMES_ILLEGAL_MOVE.increment();
+            return finish(GameConnection.ERROR);
+        }
+        board.makeMove(CLIENT_COLOUR, message);
+        recorder.move(CLIENT_COLOUR, message);
+        if (broadcast != null) {
+            broadcast.move(CLIENT_COLOUR, message);
+        }
+        return serverTurn(false);
+    }
+
+    // finishing a match the client abandoned, with the result decided from the board if the endgame solver can solve it quickly,
+    // and otherwise an error, returning the result from the client's point of view
+    // the server moves as soon as the client's message arrives, so an unfinished match is always waiting on the client to move
+    public String adjudicate(EndgameSolver solver) {
+        if (!finished) {
+            Metrics.GAMES_CONNECTION_LOST.increment();
+            String adjudicated = solver.adjudicate(board, CLIENT_COLOUR, CLIENT_COLOUR);
+            this.result = adjudicated != null ? adjudicated : "ERROR";
+            this.adjudicated = adjudicated != null;
+            if (this.adjudicated) {
+                Metrics.GAMES_ADJUDICATED.increment();
+            }
+            finished = true;
+        }
+        return result;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    // getting the record of the match for the game log, naming the client
+    public GameRecord toRecord(String clientName) {
+        return recorder.toRecord("server", clientName, GameRecord.resultOf(result, CLIENT_COLOUR), adjudicated);
+    }
+
+    // making the server's move, passing if there are no possible moves, and ending the match if the client passed too
+    private int serverTurn(boolean clientPassed) {
+        if (board.legalMoves(SERVER_COLOUR) != 0) {
+            long start = System.nanoTime();
+            int square = engine.selectMove(board, SERVER_COLOUR);
+            Metrics.LOCAL_MOVE_TIME.recordSince(start);
+            board.makeMove(SERVER_COLOUR, square);
+            recorder.move(SERVER_COLOUR, square);
+            if (broadcast != null) {
+                broadcast.move(SERVER_COLOUR, square);
+            }
+            return square;
+        }
+        if (clientPassed) {
+            // both players have passed so the game is over, and the result is sent based on the tile count
+            Metrics.GAMES_FINISHED.increment();
+            int serverTiles = board.countTiles(SERVER_COLOUR);
+            int clientTiles = board.countTiles(CLIENT_COLOUR);
+            if (serverTiles > clientTiles) {
+                return finish(GameConnection.YOU_LOSE);
+            }
+            else if (serverTiles < clientTiles) {
+                return finish(GameConnection.YOU_WIN);
+            }
+            return finish(GameConnection.DRAW);
+        }
+        recorder.pass(SERVER_COLOUR);
+        if (broadcast != null) {
+            broadcast.pass(SERVER_COLOUR);
+        }
+        return GameConnection.PASS;
+    }
+
+    // finishing the match with the given result, which is also the message sent to the client
+    private int finish(int result) {
+        this.result = GameConnection.toText(result);
+        finished = true;
+        return result;
+    }
+}
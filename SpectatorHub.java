@@ -0,0 +1,393 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// fans the moves of live matches out to any number of spectators on one TCP port, from a selector on its own thread
+// each move is written once into its match's log of text lines, and every spectator is written to straight from that log through its
+// own read-only view of it, so a move costs the players a few array writes however many spectators there are, and the players never
+// wait on a spectator's socket
+// a spectator that falls more than MAX_LAG bytes behind skips to the end of the log and is sent the board instead, so a slow spectator
+// only ever has a bounded amount of output waiting and never holds up the match
+// a spectator sends one line: WATCH <match id> (or WATCH for the newest match) to follow a match, or LIST to get the live matches
+// a followed match is sent as MATCH <id> <darks> <lights>, then BOARD <64 squares of D, L or .> <colour to move>, then a line for
+// each move (D MOVE:r,c or L PASS) and finally RESULT <result>, where BOARD is sent again whenever the spectator skips ahead
+public class SpectatorHub {
+    // longest request line
+    private static final int REQUEST_SIZE = 64;
+    // how far behind the end of a match's log a spectator can be before it is sent the board instead, in bytes
+    private static final int MAX_LAG = 512;
+    // a match's log has at most 60 moves of 11 bytes, one fewer passes than moves plus 2 at the end of 7 bytes, and its result,
+    // and the same number of events
+    private static final int LOG_SIZE = 2048;
+    private static final int MAX_EVENTS = 128;
+    // events are the square or PASS, with LIGHT set for lights, or RESULT plus the GameRecord result
+    private static final int LIGHT = 128;
+    private static final int RESULT = 256;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    // one match's log, which its players write to on their own thread and the hub reads from on the hub's thread
+    public class Broadcast {
+        private final int id;
+        private final String darkPlayer;
+        private final String lightPlayer;
+        private final ByteBuffer header;
+        private final byte[] log = new byte[LOG_SIZE];
+        // each event, and the length of the log after it
+        private final int[] events = new int[MAX_EVENTS];
+        private final int[] ends = new int[MAX_EVENTS];
+        // only used by the players' thread
+        private int length = 0;
+        private int count = 0;
+        // number of events the hub can read, where everything written before an event is published can be read once it is
+        private volatile int published = 0;
+        // whether the match has spectators, which is the only time the hub has to be woken for its moves
+        private volatile boolean watched = false;
+        // whether the match is waiting for the hub to send its new events
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // only used by the hub's thread
+        private final ArrayList<Spectator> spectators = new ArrayList<Spectator>();
+        private int snapshotCount = -1;
+        private ByteBuffer snapshot = null;
+
+        private Broadcast(int id, String darkPlayer, String lightPlayer) {
+            this.id = id;
+            this.darkPlayer = darkPlayer;
+            this.lightPlayer = lightPlayer;
+            header = ascii("MATCH " + id + " " + darkPlayer + " " + lightPlayer + "\n");
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void move(char colour, int square) {
+            publish(colour, square);
+        }
+
+        public void pass(char colour) {
+            publish(colour, GameConnection.PASS);
+        }
+
+        // ending the match with a GameRecord result, after which the hub closes its spectators once they have everything
+        public void finish(int result) {
+            if (isFinished(count) || count == MAX_EVENTS) {
+                return;
+            }
+            byte[] line = ("RESULT " + GameRecord.resultName(result) + "\n").getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(line, 0, log, length, line.length);
+            append(RESULT + result, length + line.length);
+        }
+
+        // writing a move or pass as D MOVE:r,c or L PASS
+        private void publish(char colour, int message) {
+            // a legal game always fits, so a longer one is a bug and the rest of it isn't shown
+            if (isFinished(count) || count == MAX_EVENTS - 1 || length + REQUEST_SIZE > LOG_SIZE) {
+                return;
+            }
+            int end = length;
+            log[end++] = (byte) colour;
+            log[end++] = ' ';
+            end = GameConnection.writeText(log, end, message);
+            append((colour == 'L' ? LIGHT : 0) | message, end);
+        }
+
+        private void append(int event, int end) {
+            events[count] = event;
+            ends[count] = end;
+            length = end;
+            count++;
+            published = count;
+            // a match without spectators is only handed to the hub when it ends, so the hub can forget it
+            if ((watched || event >= RESULT) && scheduled.compareAndSet(false, true)) {
+                pending.add(this);
+                selector.wakeup();
+            }
+        }
+
+        private boolean isFinished(int eventCount) {
+            return eventCount > 0 && events[eventCount - 1] >= RESULT;
+        }
+
+        private int end(int eventCount) {
+            return eventCount == 0 ? 0 : ends[eventCount - 1];
+        }
+
+        // getting the BOARD line for the position after the given number of events, made once and shared by every spectator that needs it
+        private ByteBuffer snapshot(int eventCount) {
+            if (snapshotCount != eventCount) {
+                Board board = new Board();
+                char toMove = 'D';
+                for (int i = 0; i < eventCount; i++) {
+                    if (events[i] >= RESULT) {
+                        toMove = '-';
+                        break;
+                    }
+                    char colour = (events[i] & LIGHT) != 0 ? 'L' : 'D';
+                    int message = events[i] & ~LIGHT;
+                    if (message != GameConnection.PASS) {
+                        board.makeMove(colour, message);
+                    }
+                    toMove = Board.opponent(colour);
+                }
+                StringBuilder line = new StringBuilder("BOARD ");
+                for (int row = 0; row < 8; row++) {
+                    for (int column = 0; column < 8; column++) {
+                        char tile = board.getTile(row, column);
+                        line.append(tile == ' ' ? '.' : tile);
+                    }
+                }
+                line.append(' ').append(toMove).append('\n');
+                snapshot = ascii(line.toString());
+                snapshotCount = eventCount;
+            }
+            return snapshot.duplicate();
+        }
+    }
+
+    // state of one spectator's connection, which is only used by the hub's thread
+    private static class Spectator {
+        final SocketChannel channel;
+        final ByteBuffer request = ByteBuffer.allocate(REQUEST_SIZE);
+        // match being followed, or null before the request or for a LIST or an error, where the connection closes once its output is sent
+        Broadcast match = null;
+        // output in the order it is sent, which is the match header, a BOARD line and this spectator's view of the match's log
+        final ByteBuffer[] output = {EMPTY, EMPTY, EMPTY};
+
+        Spectator(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ConcurrentHashMap<Integer, Broadcast> matches = new ConcurrentHashMap<Integer, Broadcast>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    // matches with events the hub hasn't sent yet
+    private final ConcurrentLinkedQueue<Broadcast> pending = new ConcurrentLinkedQueue<Broadcast>();
+    // where anything spectators send after their request is read into and dropped
+    private final ByteBuffer discard = ByteBuffer.allocate(REQUEST_SIZE);
+
+    // listening for spectators on the given port, handling them on a background thread
+    public SpectatorHub(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        Thread thread = new Thread(this::run, "spectator-hub");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // starting the broadcast of a new match, which can be watched until it is finished
+    public Broadcast open(String darkPlayer, String lightPlayer) {
+        Broadcast match = new Broadcast(nextId.incrementAndGet(), darkPlayer, lightPlayer);
+        matches.put(match.id, match);
+        return match;
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                selector.select();
+                Broadcast match;
+                while ((match = pending.poll()) != null) {
+                    // cleared first, so events published while the spectators are written to schedule the match again
+                    match.scheduled.set(false);
+                    update(match);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    // a spectator can have been closed while its match was updated above
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    // try catch block so a broken connection only drops its own spectator
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                flush(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (key.channel() != serverChannel) {
+                            close(key);
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+            } catch (IOException e) {
+                // only the selector itself can fail here, and it is tried again
+                System.err.println("ERROR: Spectator hub: " + e.getMessage());
+            }
+        }
+    }
+
+    // sending a match's new events to its spectators, forgetting the match once it is finished and has no spectators left
+    private void update(Broadcast match) {
+        for (int i = match.spectators.size() - 1; i >= 0; i--) {
+            SelectionKey key = match.spectators.get(i).channel.keyFor(selector);
+            try {
+                flush(key);
+            } catch (IOException e) {
+                close(key);
+            }
+        }
+        if (match.spectators.isEmpty() && match.isFinished(match.published)) {
+            matches.remove(match.id);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Spectator(channel));
+    }
+
+    // reading the spectator's request, and then only checking for it closing the connection
+    private void read(SelectionKey key) throws IOException {
+        Spectator spectator = (Spectator) key.attachment();
+        if (spectator.match != null || spectator.output[0] != EMPTY) {
+            discard.clear();
+            if (spectator.channel.read(discard) < 0) {
+                close(key);
+            }
+            return;
+        }
+        ByteBuffer request = spectator.request;
+        if (spectator.channel.read(request) < 0) {
+            close(key);
+            return;
+        }
+        byte[] bytes = request.array();
+        int lineEnd = 0;
+        while (lineEnd < request.position() && bytes[lineEnd] != '\n') {
+            lineEnd++;
+        }
+        // waiting for the rest of the request, unless it is already too long to be one, which is handled as an unknown request
+        if (lineEnd == request.position() && request.hasRemaining()) {
+            return;
+        }
+        handle(spectator, new String(bytes, 0, lineEnd, StandardCharsets.US_ASCII).trim());
+        flush(key);
+    }
+
+    private void handle(Spectator spectator, String request) {
+        if (request.equals("LIST")) {
+            StringBuilder list = new StringBuilder();
+            for (Broadcast match : matches.values()) {
+                list.append("MATCH ").append(match.id).append(' ').append(match.darkPlayer).append(' ').append(match.lightPlayer).append(' ')
+                    .append(match.published).append('\n');
+            }
+            list.append("END\n");
+            spectator.output[0] = ascii(list.toString());
+            return;
+        }
+        Broadcast match = null;
+        if (request.equals("WATCH")) {
+            // the newest match, which has the highest id
+            for (Broadcast live : matches.values()) {
+                if (match == null || live.id > match.id) {
+                    match = live;
+                }
+            }
+        }
+        else if (request.startsWith("WATCH ")) {
+            try {
+                match = matches.get(Integer.parseInt(request.substring(6).trim()));
+            } catch (NumberFormatException e) {
+                // handled as a match that doesn't exist
+            }
+        }
+        else {
+            spectator.output[0] = ascii("ERROR Unknown request, send WATCH <match id> or LIST\n");
+            return;
+        }
+        if (match == null) {
+            spectator.output[0] = ascii("ERROR No such match\n");
+            return;
+        }
+        // the match is marked as watched before its events are read, so any event this misses wakes the hub
+        match.watched = true;
+        int eventCount = match.published;
+        spectator.match = match;
+        spectator.output[0] = match.header.duplicate();
+        spectator.output[1] = match.snapshot(eventCount);
+        ByteBuffer view = ByteBuffer.wrap(match.log).asReadOnlyBuffer();
+        view.position(match.end(eventCount));
+        spectator.output[2] = view;
+        match.spectators.add(spectator);
+    }
+
+    // writing as much of the spectator's output as its socket takes, skipping it ahead to the board if it has fallen too far behind
+    private void flush(SelectionKey key) throws IOException {
+        Spectator spectator = (Spectator) key.attachment();
+        Broadcast match = spectator.match;
+        int eventCount = 0;
+        ByteBuffer[] output = spectator.output;
+        if (match != null) {
+            eventCount = match.published;
+            int end = match.end(eventCount);
+            ByteBuffer view = output[2];
+            view.limit(end);
+            if (!output[1].hasRemaining() && end - view.position() > MAX_LAG) {
+                output[1] = match.snapshot(eventCount);
+                view.position(end);
+                Metrics.SPECTATOR_RESYNCS.increment();
+            }
+        }
+        spectator.channel.write(output);
+        if (output[0].hasRemaining() || output[1].hasRemaining() || output[2].hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        // a list or error has been sent, or the spectator has everything up to the result
+        if (output[0] != EMPTY && match == null || match != null && match.isFinished(eventCount)) {
+            close(key);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        Spectator spectator = (Spectator) key.attachment();
+        if (spectator != null && spectator.match != null) {
+            spectator.match.spectators.remove(spectator);
+            if (spectator.match.spectators.isEmpty()) {
+                spectator.match.watched = false;
+                // a finished match's spectators may be the last thing keeping it
+                if (spectator.match.isFinished(spectator.match.published)) {
+                    matches.remove(spectator.match.id);
+                }
+            }
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // spectator is being dropped anyway
+        }
+    }
+
+    private static ByteBuffer ascii(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.function.Supplier;
+
+// match between two engines that stops as soon as a sequential probability ratio test can tell whether the first engine is stronger,
+// deciding between H0, that it is elo0 Elo better than the second engine, and H1, that it is elo1 Elo better, with the chances of
+// wrongly accepting H1 or H0 kept to alpha and beta
+// pairs of games are played as in a tournament, on every thread, and after every pair the log likelihood ratio (LLR) of H1 against
+// H0 is worked out from the results of the pairs so far, and the match stops once it leaves the bounds that alpha and beta give
+// the LLR uses the usual normal approximation over pairs of games, so it allows for the two games of an opening not being independent,
+// with a small count added to every kind of pair result so the variance isn't 0 before every kind has been seen
+// a clear-cut change is decided in a few hundred games, where a fixed length match would play thousands
+public class Sprt extends Tournament {
+    private static final String USAGE = "Usage: java Sprt <openings file> <engine> <engine> [--elo0 <elo>] [--elo1 <elo>] [--alpha <alpha>] [--beta <beta>] [--games <most games>] [--threads <threads>] [--log <directory>]\n"
+            + "       where an engine is as for Tournament, including process:<command> for a program that plays with java Reversi --stdio";
+    private static final double DEFAULT_ELO0 = 0;
+    private static final double DEFAULT_ELO1 = 10;
+    private static final double DEFAULT_ALPHA = 0.05;
+    private static final double DEFAULT_BETA = 0.05;
+    // most games played if the test hasn't decided by then
+    private static final int DEFAULT_GAMES = 100000;
+    // count added to each of the five pair results when working out their mean and variance
+    private static final double PRIOR_PAIRS = 0.25;
+    // how often progress is printed, in pairs of games
+    private static final int PROGRESS_PAIRS = 50;
+
+    private final double score0;
+    private final double score1;
+    private final double lowerBound;
+    private final double upperBound;
+    private double llr = 0;
+    // 1 once H1 is accepted, -1 once H0 is, and 0 until then
+    private int decision = 0;
+
+    public Sprt(String firstSpec, Supplier<Engine> first, String secondSpec, Supplier<Engine> second, int[][] openings, GameLog log, int threads,
+            double elo0, double elo1, double alpha, double beta) {
+        super(firstSpec, first, secondSpec, second, openings, log, threads);
+        score0 = expectedScore(elo0);
+        score1 = expectedScore(elo1);
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    // getting the expected score per game, from 0 to 1, of a player the given number of Elo stronger than its opponent
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    // working out the LLR after each pair, stopping the match once it is decided
+    // the pairs other threads finish after that don't change the LLR, so the summary shows the one the test was decided on
+    protected void pairFinished() {
+        if (decision == 0) {
+            double count = 0;
+            double mean = 0;
+            for (int score = 0; score < 5; score++) {
+                count += pairs[score] + PRIOR_PAIRS;
+                mean += (pairs[score] + PRIOR_PAIRS) * score / 4.0;
+            }
+            mean /= count;
+            double variance = 0;
+            for (int score = 0; score < 5; score++) {
+                variance += (pairs[score] + PRIOR_PAIRS) * (score / 4.0 - mean) * (score / 4.0 - mean);
+            }
+            variance /= count;
+            llr = getPairs() * (score1 - score0) * (2 * mean - score0 - score1) / (2 * variance);
+            if (llr >= upperBound || llr <= lowerBound) {
+                decision = llr >= upperBound ? 1 : -1;
+                stop();
+            }
+        }
+        if (getPairs() % PROGRESS_PAIRS == 0) {
+            printSummary();
+        }
+    }
+
+    // getting the games played, the results, the LLR and the Elo difference so far
+    public synchronized String summary() {
+        return String.format("%s, LLR %.2f (%.2f, %.2f)", super.summary(), llr, lowerBound, upperBound);
+    }
+
+    public synchronized int getDecision() {
+        return decision;
+    }
+
+    // main method
+    public static void main(String[] args) {
+        Options options = null;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        if (options.positionalCount() != 3) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        GameLog log = null;
+        try {
+            double elo0 = Double.parseDouble(options.get("elo0", Double.toString(DEFAULT_ELO0)));
+            double elo1 = Double.parseDouble(options.get("elo1", Double.toString(DEFAULT_ELO1)));
+            double alpha = Double.parseDouble(options.get("alpha", Double.toString(DEFAULT_ALPHA)));
+            double beta = Double.parseDouble(options.get("beta", Double.toString(DEFAULT_BETA)));
+            if (!(elo1 > elo0) || !(alpha > 0 && alpha < 0.5) || !(beta > 0 && beta < 0.5)) {
+                throw new IllegalArgumentException("--elo1 must be more than --elo0, and --alpha and --beta between 0 and 0.5");
+            }
+            int[][] openings = readOpenings(Paths.get(options.positional(0)));
+            String firstSpec = options.positional(1);
+            String secondSpec = options.positional(2);
+            Supplier<Engine> first = engineFactory(firstSpec);
+            Supplier<Engine> second = engineFactory(secondSpec);
+            int games = options.getInt("games", DEFAULT_GAMES);
+            int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+            log = options.has("log") ? new GameLog(Paths.get(options.get("log", ""))) : null;
+            Sprt sprt = new Sprt(firstSpec, first, secondSpec, second, openings, log, threads, elo0, elo1, alpha, beta);
+            System.out.println(firstSpec + " vs " + secondSpec + ", H0: " + elo0 + " Elo, H1: " + elo1 + " Elo, alpha " + alpha + ", beta " + beta
+                + ", " + threads + " threads");
+            sprt.run((games + 1) / 2);
+            sprt.printSummary();
+            int decision = sprt.getDecision();
+            System.out.println(decision > 0 ? "H1 accepted: the first engine is stronger" : decision < 0 ? "H0 accepted: the first engine isn't stronger"
+                : "No decision within " + games + " games");
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: --games and --threads must be positive integers, and --elo0, --elo1, --alpha and --beta numbers");
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to read the openings, opening book or weights, or to open the game log");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IllegalStateException e) {
+            System.err.println("ERROR: " + e.getMessage() + ": " + e.getCause());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.err.println("ERROR: Interrupted");
+            System.exit(1);
+        } finally {
+            if (log != null) {
+                log.close();
+            }
+        }
+    }
+}
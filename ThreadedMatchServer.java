@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// game server that runs each match on its own virtual thread, keeping the blocking readLine/println style of the Reversi game loop
+// each connection plays lights against the server's computer player, like the MatchServer
+public class ThreadedMatchServer {
+    // transposition table size for adjudicating an abandoned match, which is small as the table is only used once
+    static final int ADJUDICATION_TABLE_MEGABYTES = 4;
+    private static final String USAGE = "Usage: java ThreadedMatchServer <gameplay port> [--log <directory>] [--metrics <port>] [--spectators <port>]";
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    // where the record of every match is written, or null if matches aren't logged
+    private final GameLog log;
+    // where matches are broadcast to spectators, or null if they aren't
+    private final SpectatorHub spectators;
+
+    public ThreadedMatchServer(int gameplayPort, GameLog log, SpectatorHub spectators) throws IOException {
+        serverSocket = new ServerSocket(gameplayPort);
+        executor = newThreadPerMatchExecutor();
+        this.log = log;
+        this.spectators = spectators;
+    }
+
+    // running the server until the process is stopped
+    public void run() throws IOException {
+        System.out.println("listening for TCP connections on port " + serverSocket.getLocalPort());
+        while (true) {
+            Socket socket = serverSocket.accept();
+            executor.execute(() -> playMatch(socket));
+        }
+    }
+
+    // playing one match on the connection, as darks with a computer player and without printing anything
+    private void playMatch(Socket socket) {
+        try (Socket playerSocket = socket) {
+            playerSocket.setTcpNoDelay(true);
+            GameConnection connection = new GameConnection(playerSocket.getInputStream(), playerSocket.getOutputStream());
+            Game game = new Game(connection, 'D', new RandomEngine(), null);
+            SpectatorHub.Broadcast broadcast = spectators != null ? spectators.open("server", clientName(playerSocket)) : null;
+            game.setBroadcast(broadcast);
+            game.play();
+            // a match the client abandoned near the end is decided from the board instead of ending with an error
+            if (game.isConnectionLost()) {
+                String result = game.adjudicate(new EndgameSolver(ADJUDICATION_TABLE_MEGABYTES));
+                if (result != null) {
+                    // the game's result is the server's, so it is swapped to print the client's
+                    String clientResult = result.equals("YOU WIN") ? "YOU LOSE" : result.equals("YOU LOSE") ? "YOU WIN" : result;
+                    System.out.println("adjudicated abandoned match, client result: " + clientResult);
+                }
+            }
+            GameRecord record = game.toRecord("server", clientName(playerSocket));
+            if (log != null) {
+                log.append(record);
+            }
+            if (broadcast != null) {
+                broadcast.finish(record.getResult());
+            }
+        } catch (IOException e) {
+            // connection is closed, which ends the match
+        }
+    }
+
+    // naming a client by its address and port for the game log
+    static String clientName(Socket socket) {
+        return socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+    }
+
+    // creating an executor that starts a virtual thread per match (Java 21 and later), so idle matches don't hold platform threads
+    // the method is looked up at runtime so the server still compiles and runs on older Java versions, with a platform thread per match
+    static ExecutorService newThreadPerMatchExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads aren't available before Java 21, running each match on a platform thread");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // main method
+    public static void main(String[] args) {
+        Options options = null;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        if (options.positionalCount() != 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        try {
+            int gameplayPort = Integer.parseInt(options.positional(0));
+            if (gameplayPort <= 0) {
+                throw new NumberFormatException();
+            }
+            GameLog log = options.has("log") ? new GameLog(Paths.get(options.get("log", "games"))) : null;
+            if (options.has("metrics")) {
+                Metrics.serve(options.getInt("metrics", 0));
+            }
+            SpectatorHub spectators = options.has("spectators") ? new SpectatorHub(options.getInt("spectators", 0)) : null;
+            new ThreadedMatchServer(gameplayPort, log, spectators).run();
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: Didn't find positive integer for gameplay port command-line argument, --metrics or --spectators");
+            System.exit(1);
+        } catch (SocketException e) {
+            System.err.println("ERROR: Socket unable to bind to port " + options.positional(0));
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to open game log or unable to accept connections");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
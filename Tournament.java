@@ -0,0 +1,377 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// plays many games between two engines in this process to find out which is stronger, with the rules of LocalGame instead of the
+// network protocol, on a pool of threads that each play one game after another with their own copy of both engines
+// every opening from the openings file is played twice, once with each engine playing darks, so neither gets the better side of it,
+// and the results give the first engine's Elo difference over the second with 95% error bars
+// the error bars come from the results of each pair of games (both lost, a loss and a draw, and so on up to both won) rather than from
+// single games, as the two games of an opening aren't independent and counting them as if they were understates the error
+// engines are given as <kind>[:<option>=<value>,...], where the kind is random, alphabeta or mcts and the options are time (milliseconds
+// per move), depth, table (megabytes), threads, book (opening book file) and weights (pattern weight file, for alphabeta only),
+// or as process:<command> for another program that plays over its standard input and output, started once for each thread
+public class Tournament {
+    private static final String USAGE = "Usage: java Tournament <openings file> <engine> <engine> [--games <games>] [--threads <threads>] [--log <directory>]\n"
+            + "       where an engine is random, alphabeta[:time=<milliseconds>,depth=<depth>,table=<megabytes>,threads=<threads>,book=<file>,weights=<file>]\n"
+            + "       or mcts[:time=<milliseconds>,table=<megabytes>,threads=<threads>,book=<file>] or process:<command>";
+    // how often progress is printed, in pairs of games
+    private static final int PROGRESS_PAIRS = 50;
+    // time per move of an engine given a depth and no time, which is long enough that only the depth stops the search
+    private static final long UNLIMITED_TIME = 1000000000L;
+
+    private final Supplier<Engine> first;
+    private final Supplier<Engine> second;
+    private final String firstName;
+    private final String secondName;
+    private final int[][] openings;
+    // log to keep every game in, or null
+    private final GameLog log;
+    private final int threads;
+    private final AtomicLong nextPair = new AtomicLong();
+    private volatile boolean stopped = false;
+    private RuntimeException failure = null;
+    private long startTime;
+    // pairs counted when the summary was last printed, so the same summary isn't printed twice
+    private long printedPairs = -1;
+
+    // results so far from the first engine's point of view, as wins, draws and losses, and as pairs of games by the number of half
+    // points the first engine scored in them (0 to 4)
+    protected long wins = 0;
+    protected long draws = 0;
+    protected long losses = 0;
+    protected final long[] pairs = new long[5];
+
+    public Tournament(String firstSpec, Supplier<Engine> first, String secondSpec, Supplier<Engine> second, int[][] openings, GameLog log, int threads) {
+        this.first = first;
+        this.second = second;
+        this.firstName = firstSpec;
+        this.secondName = secondSpec;
+        this.openings = openings;
+        this.log = log;
+        this.threads = threads;
+    }
+
+    // playing the given number of pairs of games (or until stop is called) on every thread, throwing an IllegalStateException if an
+    // engine fails
+    public void run(long pairCount) throws InterruptedException {
+        startTime = System.nanoTime();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> playPairs(pairCount), "tournament-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("an engine failed", failure);
+        }
+    }
+
+    // stopping the tournament once the pairs being played have finished
+    public void stop() {
+        stopped = true;
+    }
+
+    // playing pairs of games until there are none left, with this thread's own engines
+    private void playPairs(long pairCount) {
+        Engine firstEngine = null;
+        Engine secondEngine = null;
+        try {
+            firstEngine = first.get();
+            secondEngine = second.get();
+            long pair;
+            while (!stopped && (pair = nextPair.getAndIncrement()) < pairCount) {
+                int[] opening = openings[(int) (pair % openings.length)];
+                int firstAsDark = playGame(firstEngine, firstName, secondEngine, secondName, opening);
+                int firstAsLight = 2 - playGame(secondEngine, secondName, firstEngine, firstName, opening);
+                finished(firstAsDark, firstAsLight);
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            stopped = true;
+        } finally {
+            if (firstEngine != null) {
+                firstEngine.close();
+            }
+            if (secondEngine != null) {
+                secondEngine.close();
+            }
+        }
+    }
+
+    // playing one game from the opening, returning darks' score in half points (2 for a win, 1 for a draw, 0 for a loss)
+    private int playGame(Engine dark, String darkName, Engine light, String lightName, int[] opening) {
+        LocalGame game = new LocalGame(new OpeningPlayer(dark, opening), new OpeningPlayer(light, opening), null);
+        int difference = game.play();
+        if (log != null) {
+            log.append(game.toRecord(darkName, lightName));
+        }
+        return difference > 0 ? 2 : difference == 0 ? 1 : 0;
+    }
+
+    // counting the results of a pair of games, each in half points for the first engine
+    private synchronized void finished(int firstAsDark, int firstAsLight) {
+        for (int score : new int[] {firstAsDark, firstAsLight}) {
+            if (score == 2) {
+                wins++;
+            }
+            else if (score == 1) {
+                draws++;
+            }
+            else {
+                losses++;
+            }
+        }
+        pairs[firstAsDark + firstAsLight]++;
+        pairFinished();
+    }
+
+    // called with the tournament locked after each pair of games is counted, printing progress every so often
+    protected void pairFinished() {
+        if (getPairs() % PROGRESS_PAIRS == 0) {
+            printSummary();
+        }
+    }
+
+    // printing the summary, unless it was last printed with the same results
+    public synchronized void printSummary() {
+        if (printedPairs != getPairs()) {
+            printedPairs = getPairs();
+            System.out.println(summary());
+        }
+    }
+
+    public synchronized long getPairs() {
+        return pairs[0] + pairs[1] + pairs[2] + pairs[3] + pairs[4];
+    }
+
+    // getting the games played, the results and the Elo difference so far
+    public synchronized String summary() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        double[] elo = elo(pairs);
+        return String.format("%d games (%.1f games/s): %d wins, %d draws, %d losses, Elo difference %+.1f +/- %.1f", wins + draws + losses,
+            (wins + draws + losses) / seconds, wins, draws, losses, elo[0], elo[1]);
+    }
+
+    // getting the Elo difference for the counts of pairs of games by half points scored, and half the width of its 95% confidence interval
+    static double[] elo(long[] pairs) {
+        long count = 0;
+        double mean = 0;
+        for (int score = 0; score < 5; score++) {
+            count += pairs[score];
+            mean += pairs[score] * score / 4.0;
+        }
+        if (count == 0) {
+            return new double[] {0, 0};
+        }
+        mean /= count;
+        double variance = 0;
+        for (int score = 0; score < 5; score++) {
+            variance += pairs[score] * (score / 4.0 - mean) * (score / 4.0 - mean);
+        }
+        double error = 1.96 * Math.sqrt(variance / count / count);
+        double low = eloOfScore(mean - error);
+        double high = eloOfScore(mean + error);
+        return new double[] {eloOfScore(mean), (high - low) / 2};
+    }
+
+    // getting the Elo difference that gives the expected score, from 0 to 1, kept finite for a score of 0 or 1
+    static double eloOfScore(double score) {
+        score = Math.max(1e-6, Math.min(1 - 1e-6, score));
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    // reading the openings file, which has one opening a line as moves separated by spaces (like 4,3 3,3), ignoring blank lines and
+    // lines starting with #, throwing an IllegalArgumentException if an opening has an illegal move
+    static int[][] readOpenings(Path file) throws IOException {
+        ArrayList<int[]> openings = new ArrayList<int[]>();
+        List<String> lines = Files.readAllLines(file);
+        for (int number = 1; number <= lines.size(); number++) {
+            String line = lines.get(number - 1).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] moves = line.split("\\s+");
+            int[] opening = new int[moves.length];
+            // playing the moves from the start to check them, passing for a player without a legal move
+            Board board = new Board();
+            char colour = 'D';
+            for (int i = 0; i < moves.length; i++) {
+                opening[i] = Board.parseMove(moves[i], 0);
+                if (board.legalMoves(colour) == 0) {
+                    colour = Board.opponent(colour);
+                }
+                if (opening[i] < 0 || !board.isLegalMove(colour, opening[i])) {
+                    throw new IllegalArgumentException("line " + number + " of the openings file: " + moves[i] + " isn't a legal move");
+                }
+                board.makeMove(colour, opening[i]);
+                colour = Board.opponent(colour);
+            }
+            openings.add(opening);
+        }
+        if (openings.isEmpty()) {
+            throw new IllegalArgumentException("the openings file has no openings");
+        }
+        return openings.toArray(new int[openings.size()][]);
+    }
+
+    // making a factory for the engine given as <kind>[:<option>=<value>,...], which makes a new engine for each thread
+    // files are loaded once here and shared by every engine made, throwing an IllegalArgumentException if the engine isn't understood
+    static Supplier<Engine> engineFactory(String spec) throws IOException {
+        if (spec.startsWith("process:")) {
+            String command = spec.substring("process:".length());
+            return () -> {
+                try {
+                    return new ProcessEngine(command);
+                } catch (IOException e) {
+                    throw new IllegalStateException("unable to start " + command, e);
+                }
+            };
+        }
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        long time = 0;
+        boolean depthGiven = false;
+        int depth = 60;
+        int table = 64;
+        int engineThreads = 1;
+        OpeningBook book = null;
+        PatternEval patterns = null;
+        if (colon >= 0) {
+            for (String option : spec.substring(colon + 1).split(",")) {
+                int equals = option.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("engine option " + option + " has no value");
+                }
+                String name = option.substring(0, equals);
+                String value = option.substring(equals + 1);
+                if (name.equals("time")) {
+                    time = positive(name, value);
+                }
+                else if (name.equals("depth")) {
+                    depth = positive(name, value);
+                    depthGiven = true;
+                }
+                else if (name.equals("table")) {
+                    table = positive(name, value);
+                }
+                else if (name.equals("threads")) {
+                    engineThreads = positive(name, value);
+                }
+                else if (name.equals("book")) {
+                    book = new OpeningBook(Paths.get(value));
+                }
+                else if (name.equals("weights") && kind.equals("alphabeta")) {
+                    patterns = new PatternEval(Paths.get(value));
+                }
+                else {
+                    throw new IllegalArgumentException("unknown option " + name + " for engine " + kind);
+                }
+            }
+        }
+        // an engine given a depth but no time searches to that depth every move
+        long moveTime = time > 0 ? time : depthGiven ? UNLIMITED_TIME : 100;
+        int maxDepth = depth;
+        int tableMegabytes = table;
+        int searchThreads = engineThreads;
+        OpeningBook openingBook = book;
+        PatternEval patternEval = patterns;
+        if (kind.equals("random")) {
+            return RandomEngine::new;
+        }
+        if (kind.equals("alphabeta")) {
+            return () -> {
+                AlphaBetaEngine engine = new AlphaBetaEngine(moveTime, maxDepth, tableMegabytes, searchThreads);
+                engine.setOpeningBook(openingBook);
+                engine.setPatternEval(patternEval);
+                return engine;
+            };
+        }
+        if (kind.equals("mcts")) {
+            return () -> {
+                MctsEngine engine = new MctsEngine(moveTime, tableMegabytes, searchThreads);
+                engine.setOpeningBook(openingBook);
+                return engine;
+            };
+        }
+        throw new IllegalArgumentException("unknown engine " + kind);
+    }
+
+    // parsing the value of an engine option that must be a positive integer
+    private static int positive(String name, String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("engine option " + name + " must be a positive integer");
+    }
+
+    // main method
+    public static void main(String[] args) {
+        Options options = null;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        if (options.positionalCount() != 3) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        GameLog log = null;
+        try {
+            int[][] openings = readOpenings(Paths.get(options.positional(0)));
+            String firstSpec = options.positional(1);
+            String secondSpec = options.positional(2);
+            Supplier<Engine> first = engineFactory(firstSpec);
+            Supplier<Engine> second = engineFactory(secondSpec);
+            // every opening is played with both colours once by default
+            long games = options.has("games") ? options.getInt("games", 0) : 2L * openings.length;
+            int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+            log = options.has("log") ? new GameLog(Paths.get(options.get("log", ""))) : null;
+            Tournament tournament = new Tournament(firstSpec, first, secondSpec, second, openings, log, threads);
+            System.out.println(firstSpec + " vs " + secondSpec + ", " + openings.length + " openings, " + threads + " threads");
+            tournament.run((games + 1) / 2);
+            tournament.printSummary();
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: --games and --threads must be positive integers");
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to read the openings, opening book or weights, or to open the game log");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IllegalStateException e) {
+            System.err.println("ERROR: " + e.getMessage() + ": " + e.getCause());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.err.println("ERROR: Interrupted");
+            System.exit(1);
+        } finally {
+            if (log != null) {
+                log.close();
+            }
+        }
+    }
+}
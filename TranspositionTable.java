@@ -0,0 +1,71 @@
+import java.util.Arrays;
+
+// hash table of searched positions, keyed by Zobrist hash, storing the score, search depth, kind of score and best move for each position
+// each entry is two longs, and the key is stored xored with the data, so a half written entry from another thread fails the key check instead of being misread
+public class TranspositionTable {
+    // kinds of score, where a lower bound comes from a beta cutoff and an upper bound from every move failing low
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+    // set in every stored entry, so an empty slot (0) is never mistaken for an entry
+    private static final long VALID = 1L << 16;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    // creating a table that uses about the given number of megabytes, rounded down to a power of two entries
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(1024, ((long) megabytes << 20) / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    // getting the entry for the position with the given hash, or 0 if there isn't one
+    public long probe(long hash) {
+        int index = (int) hash & mask;
+        long entry = data[index];
+        if ((keys[index] ^ entry) == hash && entry != 0) {
+            return entry;
+        }
+        return 0;
+    }
+
+    // storing a searched position, keeping a deeper search of the same position over a shallower one
+    public void store(long hash, int depth, int kind, int score, int move) {
+        int index = (int) hash & mask;
+        long existing = data[index];
+        if ((keys[index] ^ existing) == hash && existing != 0 && depth(existing) > depth) {
+            return;
+        }
+        // layout: bits 0 to 6 move + 1 (0 for no move), bits 7 and 8 kind, bits 9 to 15 depth, bit 16 valid, bits 32 to 63 score
+        long entry = (move + 1) | ((long) kind << 7) | ((long) depth << 9) | VALID | ((long) score << 32);
+        data[index] = entry;
+        keys[index] = hash ^ entry;
+    }
+
+    // removing every entry
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    // getting the best move of an entry, or -1 if it has none
+    public static int move(long entry) {
+        return (int) (entry & 0x7f) - 1;
+    }
+
+    public static int kind(long entry) {
+        return (int) (entry >>> 7) & 3;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 9) & 0x7f;
+    }
+
+    public static int score(long entry) {
+        return (int) (entry >> 32);
+    }
+}
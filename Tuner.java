@@ -0,0 +1,400 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// trains the weights of the pattern evaluation in two steps, without needing anything but this machine
+// first, positions are collected into a training file along with the final tile difference of the game they came from, either from the
+// games in a game log or from games the computer plays against itself, which start with a few random moves so no two are the same
+// then the weights are fitted to predict the final tile difference of every position, with mini-batch gradient descent on every core
+// each thread goes through its own share of the positions in mini-batches and adds each batch's step straight to the shared weights
+// without locking (as each batch only touches a few thousand of the million weights, threads rarely step on each other), so the fitting
+// scales with the cores, and every weight is moved by the average error of the positions it was used in, so rare patterns still learn
+// training file layout: 4 byte magic number, then 17 byte positions of dark tiles (8 bytes), light tiles (8 bytes) and the final
+// tile difference for darks (1 byte), so tens of millions of positions fit in memory as three primitive arrays
+public class Tuner {
+    private static final String USAGE = "Usage: java Tuner selfplay <training file> <games> [--depth <depth>] [--random <moves>] [--weights <file>] [--threads <threads>]\n"
+            + "       java Tuner log <training file> <log directory>\n"
+            + "       java Tuner fit <training file> <weights file> [--epochs <epochs>] [--batch <positions>] [--rate <rate>] [--threads <threads>]";
+    private static final int MAGIC = 0x52565450;
+    private static final int POSITION_SIZE = 17;
+    private static final int DEFAULT_DEPTH = 4;
+    private static final int DEFAULT_RANDOM_MOVES = 8;
+    private static final int DEFAULT_EPOCHS = 20;
+    private static final int DEFAULT_BATCH = 1024;
+    private static final float DEFAULT_RATE = 0.01f;
+    // one in this many positions is held out of the fitting
+    private static final int HOLDOUT_FRACTION = 20;
+    // how often self-play progress is printed, in games
+    private static final int PROGRESS_GAMES = 1000;
+
+    // the training file being written, which threads add whole games to
+    private final DataOutputStream out;
+    // games and positions added so far
+    private long gamesAdded = 0;
+    private long positions = 0;
+
+    // opening the training file to add positions to, writing its header if it is new and checking it otherwise
+    private Tuner(Path file) throws IOException {
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+        if (exists) {
+            checkHeader(file);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 1 << 16));
+        if (!exists) {
+            out.writeInt(MAGIC);
+        }
+    }
+
+    // checking that a file is a training file with whole positions, returning the number of positions in it
+    private static long checkHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            if (header.position() < 4 || header.getInt(0) != MAGIC || (channel.size() - 4) % POSITION_SIZE != 0) {
+                throw new IOException(file + " isn't a training file");
+            }
+            return (channel.size() - 4) / POSITION_SIZE;
+        }
+    }
+
+    // adding the positions of one game, all ending with the same final tile difference
+    private synchronized void add(long[] dark, long[] light, int count, int difference) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeLong(dark[i]);
+            out.writeLong(light[i]);
+            out.writeByte(difference);
+        }
+        gamesAdded++;
+        positions += count;
+    }
+
+    private void close() throws IOException {
+        out.close();
+    }
+
+    // playing games of the computer against itself on every thread, adding the positions of each to the training file
+    // each game starts with the given number of random moves, and after that both sides search to the given depth
+    private void selfPlay(int games, int depth, int randomMoves, PatternEval patterns, int threads) throws InterruptedException {
+        AtomicInteger nextGame = new AtomicInteger();
+        IOException[] failure = new IOException[1];
+        long start = System.nanoTime();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            long seed = System.nanoTime() + i;
+            workers[i] = new Thread(() -> {
+                AlphaBetaEngine engine = new AlphaBetaEngine(0, depth, 16);
+                if (patterns != null) {
+                    engine.setPatternEval(patterns);
+                }
+                RandomEngine random = new RandomEngine(seed);
+                long[] dark = new long[128];
+                long[] light = new long[128];
+                try {
+                    while (nextGame.getAndIncrement() < games) {
+                        Board board = new Board();
+                        char colour = 'D';
+                        int count = 0;
+                        int moves = 0;
+                        while ((board.legalMoves('D') | board.legalMoves('L')) != 0) {
+                            if (board.legalMoves(colour) != 0) {
+                                dark[count] = board.getTiles('D');
+                                light[count] = board.getTiles('L');
+                                count++;
+                                int move = moves++ < randomMoves ? random.selectMove(board, colour) : engine.searchToDepth(board, colour, depth);
+                                board.makeMove(colour, move);
+                            }
+                            colour = Board.opponent(colour);
+                        }
+                        // adding the game and printing progress under one lock, so the totals printed are the games finished so far
+                        synchronized (this) {
+                            add(dark, light, count, board.countTiles('D') - board.countTiles('L'));
+                            if (gamesAdded % PROGRESS_GAMES == 0) {
+                                System.out.printf("%d games, %d positions, %.1f games/s%n", gamesAdded, positions,
+                                    gamesAdded / ((System.nanoTime() - start) / 1e9));
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                    nextGame.set(games);
+                }
+            }, "self-play " + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure[0] != null) {
+            throw new IllegalStateException("writing the training file failed", failure[0]);
+        }
+    }
+
+    // adding the positions of every game in a game log that was played to the end, returning the number of games used
+    private long fromLog(Path directory) throws IOException {
+        long games = 0;
+        long[] dark = new long[128];
+        long[] light = new long[128];
+        try (GameLogReader reader = new GameLogReader(directory)) {
+            GameRecord record;
+            while ((record = reader.next()) != null) {
+                // an abandoned or adjudicated game doesn't have a final tile difference
+                if (record.getResult() == GameRecord.ERROR || record.isAdjudicated()) {
+                    continue;
+                }
+                Board board;
+                try {
+                    board = record.replay();
+                } catch (IllegalStateException e) {
+                    continue;
+                }
+                int difference = board.countTiles('D') - board.countTiles('L');
+                board = new Board();
+                char colour = 'D';
+                int count = 0;
+                for (int i = 0; i < record.getMoveCount(); i++) {
+                    if (board.legalMoves(colour) == 0) {
+                        colour = Board.opponent(colour);
+                    }
+                    dark[count] = board.getTiles('D');
+                    light[count] = board.getTiles('L');
+                    count++;
+                    board.makeMove(colour, record.getMove(i));
+                    colour = Board.opponent(colour);
+                }
+                add(dark, light, count, difference);
+                games++;
+            }
+        }
+        return games;
+    }
+
+    // fitting pattern weights to the positions in a training file, returning them in the weight file's units (hundredths of a tile)
+    static short[] fit(Path file, int epochs, int batch, float rate, int threads) throws IOException, InterruptedException {
+        // loading every position into primitive arrays, then shuffling the ones fitted to so a batch isn't all from one game
+        int count = (int) Math.min(checkHeader(file), Integer.MAX_VALUE - 8);
+        if (count < HOLDOUT_FRACTION) {
+            throw new IOException(file + " has too few positions to fit weights to");
+        }
+        long[] dark = new long[count];
+        long[] light = new long[count];
+        byte[] difference = new byte[count];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(POSITION_SIZE * 65536);
+            channel.position(4);
+            int loaded = 0;
+            while (loaded < count) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), (long) (count - loaded) * POSITION_SIZE));
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // reading until the buffer is full
+                }
+                buffer.flip();
+                while (buffer.remaining() >= POSITION_SIZE) {
+                    dark[loaded] = buffer.getLong();
+                    light[loaded] = buffer.getLong();
+                    difference[loaded] = buffer.get();
+                    loaded++;
+                }
+            }
+        }
+        // keeping the last positions in the file out of the fitting, to check the weights on positions they weren't fitted to
+        // the file is written a game at a time, so these come from games that none of the fitted positions do (but for the one game
+        // the split may fall in), and the check isn't flattered by positions from the same game as ones that were fitted
+        int holdout = count / HOLDOUT_FRACTION;
+        int training = count - holdout;
+        Random random = new Random(count);
+        for (int i = training - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = dark[i];
+            dark[i] = dark[j];
+            dark[j] = swap;
+            swap = light[i];
+            light[i] = light[j];
+            light[j] = swap;
+            byte swapDifference = difference[i];
+            difference[i] = difference[j];
+            difference[j] = swapDifference;
+        }
+        System.out.println("loaded " + count + " positions, fitting to " + training + " and holding out " + holdout);
+
+        float[] weights = new float[PatternEval.STAGES * PatternEval.STAGE_SIZE];
+        Fitter[] fitters = new Fitter[threads];
+        for (int i = 0; i < threads; i++) {
+            fitters[i] = new Fitter(weights, dark, light, difference, (int) ((long) training * i / threads),
+                (int) ((long) training * (i + 1) / threads), batch, rate);
+        }
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            long start = System.nanoTime();
+            Thread[] running = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                running[i] = new Thread(fitters[i], "fitter " + i);
+                running[i].start();
+            }
+            double squaredError = 0;
+            for (int i = 0; i < threads; i++) {
+                running[i].join();
+                squaredError += fitters[i].squaredError;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("epoch %d: error %.3f tiles (root mean square), %.3f on held out positions, %.1fs, %.0f positions/s%n", epoch,
+                Math.sqrt(squaredError / training), Math.sqrt(fitters[0].squaredError(training, count) / holdout), seconds, training / seconds);
+        }
+        short[] scaled = new short[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            scaled[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(weights[i] * 100)));
+        }
+        return scaled;
+    }
+
+    // one thread's share of the fitting, which goes through its positions once each time it is run
+    private static class Fitter implements Runnable {
+        private final float[] weights;
+        private final long[] dark;
+        private final long[] light;
+        private final byte[] difference;
+        private final int first;
+        private final int end;
+        private final int batch;
+        private final float rate;
+        // the batch's summed error and number of uses for each weight, and which weights the batch used, so only those are reset
+        private final float[] errors;
+        private final int[] uses;
+        private final int[] used;
+        private final int[] indexes = new int[PatternEval.PLACEMENTS];
+        private final int[] weightIndexes = new int[PatternEval.PLACEMENTS];
+        private double squaredError;
+
+        Fitter(float[] weights, long[] dark, long[] light, byte[] difference, int first, int end, int batch, float rate) {
+            this.weights = weights;
+            this.dark = dark;
+            this.light = light;
+            this.difference = difference;
+            this.first = first;
+            this.end = end;
+            this.batch = batch;
+            this.rate = rate;
+            errors = new float[weights.length];
+            uses = new int[weights.length];
+            used = new int[batch * PatternEval.PLACEMENTS];
+        }
+
+        public void run() {
+            squaredError = 0;
+            for (int start = first; start < end; start += batch) {
+                int usedCount = 0;
+                for (int position = start; position < Math.min(start + batch, end); position++) {
+                    float error = difference[position] - predict(position);
+                    squaredError += error * error;
+                    for (int placement = 0; placement < PatternEval.PLACEMENTS; placement++) {
+                        int weight = weightIndexes[placement];
+                        if (uses[weight]++ == 0) {
+                            used[usedCount++] = weight;
+                        }
+                        errors[weight] += error;
+                    }
+                }
+                // moving every weight the batch used by the average error of its positions
+                for (int i = 0; i < usedCount; i++) {
+                    int weight = used[i];
+                    weights[weight] += rate * errors[weight] / uses[weight];
+                    errors[weight] = 0;
+                    uses[weight] = 0;
+                }
+            }
+        }
+
+        // predicting the final tile difference of a position, leaving the weights it used in weightIndexes
+        private float predict(int position) {
+            PatternEval.indexes(dark[position], light[position], indexes);
+            int base = PatternEval.stage(Long.bitCount(dark[position] | light[position])) * PatternEval.STAGE_SIZE;
+            float prediction = 0;
+            for (int placement = 0; placement < PatternEval.PLACEMENTS; placement++) {
+                int weight = base + PatternEval.weightIndex(placement, indexes[placement]);
+                weightIndexes[placement] = weight;
+                prediction += weights[weight];
+            }
+            return prediction;
+        }
+
+        // getting the summed squared error of the predictions for a range of positions, without changing the weights
+        double squaredError(int from, int to) {
+            double sum = 0;
+            for (int position = from; position < to; position++) {
+                float error = difference[position] - predict(position);
+                sum += error * error;
+            }
+            return sum;
+        }
+    }
+
+    // main method
+    public static void main(String[] args) {
+        Options options = null;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        String command = options.positionalCount() > 0 ? options.positional(0) : "";
+        if (!(command.equals("selfplay") && options.positionalCount() == 3) && !(command.equals("log") && options.positionalCount() == 3)
+                && !(command.equals("fit") && options.positionalCount() == 3)) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        Path file = Paths.get(options.positional(1));
+        try {
+            int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+            long start = System.nanoTime();
+            if (command.equals("fit")) {
+                float rate = options.has("rate") ? Float.parseFloat(options.get("rate", "")) : DEFAULT_RATE;
+                if (!(rate > 0)) {
+                    throw new NumberFormatException();
+                }
+                short[] weights = fit(file, options.getInt("epochs", DEFAULT_EPOCHS), options.getInt("batch", DEFAULT_BATCH), rate, threads);
+                PatternEval.write(Paths.get(options.positional(2)), weights);
+                System.out.println("wrote weights to " + options.positional(2) + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+                return;
+            }
+            Tuner tuner = new Tuner(file);
+            try {
+                if (command.equals("log")) {
+                    long games = tuner.fromLog(Paths.get(options.positional(2)));
+                    System.out.println("added " + tuner.positions + " positions from " + games + " games");
+                }
+                else {
+                    int games = Integer.parseInt(options.positional(2));
+                    if (games <= 0) {
+                        throw new NumberFormatException();
+                    }
+                    PatternEval patterns = options.has("weights") ? new PatternEval(Paths.get(options.get("weights", ""))) : null;
+                    tuner.selfPlay(games, options.getInt("depth", DEFAULT_DEPTH), options.getInt("random", DEFAULT_RANDOM_MOVES), patterns, threads);
+                    System.out.println("added " + tuner.positions + " positions from " + games + " games in " + (System.nanoTime() - start) / 1000000 + "ms");
+                }
+            } finally {
+                tuner.close();
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.err.println("ERROR: games, --depth, --random, --epochs, --batch and --threads must be positive integers, and --rate a positive number");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to read or write the training, weight or log file");
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.err.println("ERROR: Interrupted");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.Random;
+
+// Zobrist hashing of Reversi positions, where each tile on each square has a random 64-bit key and a position's hash is all of its keys xored together
+// the keys come from a fixed seed, so hashes are the same in every process and can be stored in files
+public class Zobrist {
+    static final long[] DARK = new long[64];
+    static final long[] LIGHT = new long[64];
+    // xoring both keys for a square swaps a tile's colour, which is what flipping it does
+    static final long[] FLIP = new long[64];
+    // xored in when lights are to move
+    static final long LIGHT_TO_MOVE;
+
+    static {
+        Random random = new Random(0x5eed0f0e11011eL);
+        for (int square = 0; square < 64; square++) {
+            DARK[square] = random.nextLong();
+            LIGHT[square] = random.nextLong();
+            FLIP[square] = DARK[square] ^ LIGHT[square];
+        }
+        LIGHT_TO_MOVE = random.nextLong();
+    }
+
+    // getting the hash of the position with the given tiles and colour to move
+    public static long hash(long dark, long light, char colourToMove) {
+        long hash = colourToMove == 'L' ? LIGHT_TO_MOVE : 0;
+        for (; dark != 0; dark &= dark - 1) {
+            hash ^= DARK[Long.numberOfTrailingZeros(dark)];
+        }
+        for (; light != 0; light &= light - 1) {
+            hash ^= LIGHT[Long.numberOfTrailingZeros(light)];
+        }
+        return hash;
+    }
+
+    // getting the same hash for a position and its seven rotations and reflections, ignoring the colour to move,
+    // which is the smallest of the eight boards' hashes
+    public static long canonicalHash(long dark, long light) {
+        long best = Long.MAX_VALUE;
+        for (int symmetry = 0; symmetry < 8; symmetry++) {
+            best = Math.min(best, hash(dark, light, 'D'));
+            // the eight symmetries are reached by flipping rows, then columns, then rows again, then transposing and repeating
+            if (symmetry == 3) {
+                dark = Board.transpose(dark);
+                light = Board.transpose(light);
+            }
+            else if ((symmetry & 1) == 0) {
+                dark = Board.flipRows(dark);
+                light = Board.flipRows(light);
+            }
+            else {
+                dark = Board.flipColumns(dark);
+                light = Board.flipColumns(light);
+            }
+        }
+        return best;
+    }
+
+    // getting the hash after the given colour places a tile on the square and flips the given tiles, including the change of colour to move
+    public static long afterMove(long hash, char colour, int square, long flipped) {
+        hash ^= (colour == 'D' ? DARK[square] : LIGHT[square]) ^ LIGHT_TO_MOVE;
+        for (; flipped != 0; flipped &= flipped - 1) {
+            hash ^= FLIP[Long.numberOfTrailingZeros(flipped)];
+        }
+        return hash;
+    }
+
+    // getting the hash after the colour to move passes
+    public static long afterPass(long hash) {
+        return hash ^ LIGHT_TO_MOVE;
+    }
+}